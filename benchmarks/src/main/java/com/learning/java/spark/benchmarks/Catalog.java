@@ -0,0 +1,65 @@
+package com.learning.java.spark.benchmarks;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.service.ProductService;
+import com.learning.java.spark.rest_api_demo.service.id.AtomicIdGenerator;
+import com.learning.java.spark.rest_api_demo.service.store.ProductStores;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic sample data shared by the benchmarks
+ */
+final class Catalog {
+    static final String[] CATEGORIES = {
+            "Electronics", "Accessories", "Furniture", "Office", "Kitchen",
+            "Garden", "Toys", "Books", "Sports", "Clothing"};
+
+    private Catalog() {
+    }
+
+    static Product product(int n) {
+        return new Product(null, "Product " + n, "Description of sample product number " + n,
+                1 + (n % 1000) * 0.25, n % 100, CATEGORIES[n % CATEGORIES.length]);
+    }
+
+    static List<Product> products(int count) {
+        List<Product> products = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            Product product = product(n);
+            product.setId(Integer.toString(n + 1));
+            products.add(product);
+        }
+        return products;
+    }
+
+    /**
+     * A service holding the five seed products followed by count generated ones
+     * The product store follows -Dproducts.store, as in the server.
+     */
+    static ProductService service(int count) {
+        ProductService service = new ProductService(new AtomicIdGenerator(), null, null, ProductStores.fromSystemProperties());
+        List<Product> batch = new ArrayList<>(1000);
+        for (int n = 0; n < count; n++) {
+            batch.add(product(n));
+            if (batch.size() == 1000) {
+                service.createProducts(batch);
+                batch.clear();
+            }
+        }
+        service.createProducts(batch);
+        return service;
+    }
+
+    /**
+     * IDs of every product in a service built by {@link #service(int)}, as strings
+     */
+    static String[] ids(int count) {
+        String[] ids = new String[count + 5];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = Integer.toString(i + 1);
+        }
+        return ids;
+    }
+}
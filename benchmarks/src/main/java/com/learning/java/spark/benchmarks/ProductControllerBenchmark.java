@@ -0,0 +1,104 @@
+package com.learning.java.spark.benchmarks;
+
+import com.learning.java.spark.rest_api_demo.cache.ResponseCache;
+import com.learning.java.spark.rest_api_demo.controller.ProductController;
+import com.learning.java.spark.rest_api_demo.util.JsonUtil;
+import com.learning.java.spark.rest_api_demo.util.ResponseCompressor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import spark.Route;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route lambdas invoked directly with stub requests, measuring the controller without Jetty
+ * Run with and without the response cache, and with and without gzip negotiated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductControllerBenchmark {
+    @Param({"10000"})
+    public int catalogSize;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    @Param({"identity", "gzip"})
+    public String acceptEncoding;
+
+    private String[] ids;
+    private String createBody;
+    private String patchBody;
+    private Route getProductById;
+    private Route getAllProducts;
+    private Route createProduct;
+    private Route updateProduct;
+    private Route patchProduct;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        ResponseCache cache = cached ? new ResponseCache(64L * 1024 * 1024, 1024 * 1024) : new ResponseCache(0, 0);
+        ProductController controller = new ProductController(
+                Catalog.service(catalogSize), cache, new ResponseCompressor(1024));
+        ids = Catalog.ids(catalogSize);
+        createBody = JsonUtil.toJson(Catalog.product(catalogSize + 1));
+        patchBody = "{\"quantity\": 42}";
+        getProductById = controller.getProductById();
+        getAllProducts = controller.getAllProducts();
+        createProduct = controller.createProduct();
+        updateProduct = controller.updateProduct();
+        patchProduct = controller.patchProduct();
+    }
+
+    @Benchmark
+    public Object getProductById() throws Exception {
+        String id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        StubRequest req = new StubRequest("GET").param("id", id).header("Accept-Encoding", acceptEncoding);
+        return getProductById.handle(req, new StubResponse());
+    }
+
+    @Benchmark
+    public Object getProductsByCategory() throws Exception {
+        String category = Catalog.CATEGORIES[ThreadLocalRandom.current().nextInt(Catalog.CATEGORIES.length)];
+        StubRequest req = new StubRequest("GET").queryParam("category", category)
+                .header("Accept-Encoding", acceptEncoding);
+        StubResponse res = new StubResponse();
+        getAllProducts.handle(req, res);
+        return res.bytesWritten();
+    }
+
+    @Benchmark
+    public Object createProduct() throws Exception {
+        return createProduct.handle(new StubRequest("POST").withBody(createBody), new StubResponse());
+    }
+
+    /**
+     * Full replacement, the way clients had to change a quantity before PATCH
+     */
+    @Benchmark
+    public Object updateProduct() throws Exception {
+        String id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        return updateProduct.handle(new StubRequest("PUT").param("id", id).withBody(createBody), new StubResponse());
+    }
+
+    @Benchmark
+    public Object patchProduct() throws Exception {
+        String id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        return patchProduct.handle(new StubRequest("PATCH").param("id", id).withBody(patchBody), new StubResponse());
+    }
+}
@@ -0,0 +1,47 @@
+package com.learning.java.spark.benchmarks;
+
+import com.learning.java.spark.rest_api_demo.service.ProductService;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Heap and direct memory retained per product by ProductService, indexes included
+ * Not a JMH benchmark: it fills a catalog, forces full collections before and after, and
+ * divides the growth of the used heap and of direct buffers by the number of products. Run it
+ * with a heap large enough for the catalog, and -Dproducts.store=offheap for the off-heap store:
+ * java -Xmx4g -cp benchmarks/target/benchmarks.jar com.learning.java.spark.benchmarks.ProductFootprint 1000000
+ */
+public class ProductFootprint {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        long before = usedHeap(memory);
+        long directBefore = usedDirect();
+        ProductService service = Catalog.service(count);
+        long after = usedHeap(memory);
+        long directAfter = usedDirect();
+
+        System.out.printf("%d products, %.1f MB retained, %.1f bytes per product%n",
+                service.getProductCount(), (after - before) / 1e6, (after - before) / (double) count);
+        System.out.printf("direct memory: %.1f MB retained, %.1f bytes per product%n",
+                (directAfter - directBefore) / 1e6, (directAfter - directBefore) / (double) count);
+    }
+
+    private static long usedDirect() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
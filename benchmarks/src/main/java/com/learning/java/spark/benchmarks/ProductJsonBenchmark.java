@@ -0,0 +1,51 @@
+package com.learning.java.spark.benchmarks;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.util.JsonUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gson encoding and decoding of a single product, as done by every single-product route
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductJsonBenchmark {
+    private Product product;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        product = Catalog.products(1).get(0);
+        json = JsonUtil.toJson(product);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return JsonUtil.toJson(product);
+    }
+
+    @Benchmark
+    public String toJsonPretty() {
+        return JsonUtil.toJson(product, true);
+    }
+
+    @Benchmark
+    public Product fromJson() {
+        return JsonUtil.fromJson(json, Product.class);
+    }
+}
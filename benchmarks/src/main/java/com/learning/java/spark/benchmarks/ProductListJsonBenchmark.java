@@ -0,0 +1,58 @@
+package com.learning.java.spark.benchmarks;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.util.JsonUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a listing as one String against streaming it, and decoding it back
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ProductListJsonBenchmark {
+    @Param({"1000", "100000"})
+    public int size;
+
+    private List<Product> products;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        products = Catalog.products(size);
+        json = JsonUtil.toJson(products);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return JsonUtil.toJson(products);
+    }
+
+    @Benchmark
+    public void writeJsonArray() throws IOException {
+        JsonUtil.writeJsonArray(products, OutputStream.nullOutputStream(), false);
+    }
+
+    @Benchmark
+    public Product[] fromJson() {
+        return JsonUtil.fromJson(json, Product[].class);
+    }
+}
@@ -0,0 +1,102 @@
+package com.learning.java.spark.benchmarks;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.model.ProductPage;
+import com.learning.java.spark.rest_api_demo.model.ProductQuery;
+import com.learning.java.spark.rest_api_demo.service.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service reads and writes against an in-memory catalog, run at 1, 4 and 16 threads
+ * to show how the write path scales under contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class ProductServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CatalogState {
+        @Param({"10000"})
+        public int catalogSize;
+
+        ProductService service;
+        String[] ids;
+        Product update;
+
+        /**
+         * A fresh catalog per iteration keeps create from growing the map without bound
+         */
+        @Setup(Level.Iteration)
+        public void setUp() {
+            service = Catalog.service(catalogSize);
+            ids = Catalog.ids(catalogSize);
+            update = Catalog.product(catalogSize + 1);
+        }
+
+        String randomId() {
+            return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        }
+
+        String randomCategory() {
+            return Catalog.CATEGORIES[ThreadLocalRandom.current().nextInt(Catalog.CATEGORIES.length)];
+        }
+    }
+
+    @Benchmark
+    public Optional<Product> getById(CatalogState state) {
+        return state.service.getProductById(state.randomId());
+    }
+
+    @Benchmark
+    public Product create(CatalogState state) {
+        return state.service.createProduct(Catalog.product(ThreadLocalRandom.current().nextInt(1000)));
+    }
+
+    @Benchmark
+    public Optional<Product> update(CatalogState state) {
+        Product product = Catalog.product(ThreadLocalRandom.current().nextInt(1000));
+        return state.service.updateProduct(state.randomId(), product);
+    }
+
+    @Benchmark
+    public List<Product> categoryFilter(CatalogState state) {
+        return state.service.getProductsByCategory(state.randomCategory());
+    }
+
+    @Benchmark
+    public ProductPage categoryPage(CatalogState state) {
+        return state.service.getProductsPage(new ProductQuery(state.randomCategory(), null, null, null, 100));
+    }
+
+    @Threads(1)
+    public static class OneThread extends ProductServiceBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends ProductServiceBenchmark {
+    }
+
+    @Threads(16)
+    public static class SixteenThreads extends ProductServiceBenchmark {
+    }
+}
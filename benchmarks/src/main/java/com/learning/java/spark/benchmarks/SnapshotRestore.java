@@ -0,0 +1,77 @@
+package com.learning.java.spark.benchmarks;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.service.ProductService;
+import com.learning.java.spark.rest_api_demo.service.id.AtomicIdGenerator;
+import com.learning.java.spark.rest_api_demo.service.persistence.SnapshotSettings;
+import com.learning.java.spark.rest_api_demo.service.persistence.SnapshotStore;
+import com.learning.java.spark.rest_api_demo.service.store.ProductStores;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Time to restart ProductService from a snapshot, checked against the restore-time target
+ * Not a JMH benchmark: a restart happens once, so it writes a snapshot of generated products
+ * straight to a temporary directory, then times a ProductService built from it, indexes included.
+ * It exits with status 1 when the restore takes longer than the target (5 seconds unless
+ * -Dtarget.seconds says otherwise), so it can gate a build on the machine it runs on:
+ * java -Xmx8g -cp benchmarks/target/benchmarks.jar com.learning.java.spark.benchmarks.SnapshotRestore 5000000
+ */
+public class SnapshotRestore {
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        double targetSeconds = Double.parseDouble(System.getProperty("target.seconds", "5"));
+        Path directory = Files.createTempDirectory("snapshot-restore");
+        boolean met;
+        try {
+            long started = System.nanoTime();
+            new SnapshotStore(directory).write(() -> generated(count), 0);
+            System.out.printf("wrote a snapshot of %d products in %.2f s%n", count, seconds(started));
+
+            started = System.nanoTime();
+            // Not closed: closing would write a final snapshot of its own
+            ProductService service = new ProductService(new AtomicIdGenerator(), null,
+                    new SnapshotSettings(directory, 3600), ProductStores.fromSystemProperties());
+            double restore = seconds(started);
+            System.out.printf("restored %d products in %.2f s (%.0f products/s), target %.1f s%n",
+                    service.getProductCount(), restore, count / restore, targetSeconds);
+            met = service.getProductCount() == count && restore <= targetSeconds;
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        System.exit(met ? 0 : 1);
+    }
+
+    /**
+     * The products Catalog.products would hold, made one at a time so they are never all on the heap
+     */
+    private static Iterator<Product> generated(int count) {
+        return new Iterator<>() {
+            private int n;
+
+            @Override
+            public boolean hasNext() {
+                return n < count;
+            }
+
+            @Override
+            public Product next() {
+                Product product = Catalog.product(n);
+                product.setId(Integer.toString(++n));
+                return product;
+            }
+        };
+    }
+
+    private static double seconds(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1e9;
+    }
+}
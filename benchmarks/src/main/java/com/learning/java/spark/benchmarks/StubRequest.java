@@ -0,0 +1,90 @@
+package com.learning.java.spark.benchmarks;
+
+import spark.Request;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Request with fixed parameters, headers and body, so routes can be invoked without a server
+ * Only the accessors the product routes use are implemented.
+ */
+final class StubRequest extends Request {
+    private final String method;
+    private final Map<String, String> params = new HashMap<>();
+    private final Map<String, String> queryParams = new HashMap<>();
+    private final Map<String, String> headers = new HashMap<>();
+    private String body;
+    private byte[] bodyBytes;
+
+    StubRequest(String method) {
+        this.method = method;
+    }
+
+    StubRequest param(String name, String value) {
+        params.put(name.startsWith(":") ? name : ":" + name, value);
+        return this;
+    }
+
+    StubRequest queryParam(String name, String value) {
+        queryParams.put(name, value);
+        return this;
+    }
+
+    StubRequest header(String name, String value) {
+        headers.put(name.toLowerCase(), value);
+        return this;
+    }
+
+    StubRequest withBody(String body) {
+        this.body = body;
+        this.bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        return this;
+    }
+
+    @Override
+    public String params(String param) {
+        return params.get(param.startsWith(":") ? param : ":" + param);
+    }
+
+    @Override
+    public String queryParams(String queryParam) {
+        return queryParams.get(queryParam);
+    }
+
+    @Override
+    public String queryString() {
+        if (queryParams.isEmpty()) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        queryParams.forEach((name, value) -> {
+            if (query.length() > 0) {
+                query.append('&');
+            }
+            query.append(name).append('=').append(value);
+        });
+        return query.toString();
+    }
+
+    @Override
+    public String headers(String header) {
+        return headers.get(header.toLowerCase());
+    }
+
+    @Override
+    public String body() {
+        return body;
+    }
+
+    @Override
+    public byte[] bodyAsBytes() {
+        return bodyBytes;
+    }
+
+    @Override
+    public String requestMethod() {
+        return method;
+    }
+}
@@ -0,0 +1,92 @@
+package com.learning.java.spark.benchmarks;
+
+import spark.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Response that keeps status and headers and discards the body
+ * Bytes written to the raw output stream are only counted, so streaming routes pay
+ * for encoding but not for I/O.
+ */
+final class StubResponse extends Response {
+    private final Map<String, String> headers = new HashMap<>();
+    private final CountingOutputStream out = new CountingOutputStream();
+    private int status = 200;
+    private String type;
+    private final HttpServletResponse raw = (HttpServletResponse) Proxy.newProxyInstance(
+            StubResponse.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getOutputStream" -> out;
+                case "isCommitted" -> out.written > 0;
+                case "getStatus" -> status;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> null;
+            });
+
+    @Override
+    public void status(int statusCode) {
+        status = statusCode;
+    }
+
+    @Override
+    public int status() {
+        return status;
+    }
+
+    @Override
+    public void type(String contentType) {
+        type = contentType;
+    }
+
+    @Override
+    public String type() {
+        return type;
+    }
+
+    @Override
+    public void header(String header, String value) {
+        headers.put(header, value);
+    }
+
+    @Override
+    public HttpServletResponse raw() {
+        return raw;
+    }
+
+    /**
+     * Body bytes written to the raw stream so far
+     */
+    long bytesWritten() {
+        return out.written;
+    }
+
+    private static final class CountingOutputStream extends ServletOutputStream {
+        private long written;
+
+        @Override
+        public void write(int b) {
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            written += len;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.learning.java.spark.server;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Rejects request bodies over the configured size with 413 Payload Too Large
+ * A declared Content-Length is checked before the route runs. A chunked body is counted while
+ * the route reads it: reading past the limit fails, and the route's response is replaced by
+ * the 413 unless it was already sent. Nothing is buffered, so streaming routes keep streaming,
+ * and a path can have its own limit, or none (-1).
+ */
+class RequestLimitHandler extends HandlerWrapper {
+    private final long maxBytes;
+    private final Map<String, Long> pathLimits;
+
+    RequestLimitHandler(long maxBytes, Map<String, Long> pathLimits) {
+        this.maxBytes = maxBytes;
+        this.pathLimits = pathLimits;
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+            throws IOException, ServletException {
+        long limit = pathLimits.getOrDefault(request.getRequestURI(), maxBytes);
+        long length = request.getContentLengthLong();
+        if (limit >= 0 && length > limit) {
+            reject(baseRequest, response, limit);
+            return;
+        }
+        if (limit < 0 || length >= 0 || request.getHeader("Transfer-Encoding") == null) {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+
+        LimitedRequest limited = new LimitedRequest(request, limit);
+        super.handle(target, baseRequest, limited, response);
+        // Spark turns read errors into an empty body, so the route's own answer is replaced here
+        if (limited.exceeded && !response.isCommitted()) {
+            response.reset();
+            reject(baseRequest, response, limit);
+        }
+    }
+
+    private static void reject(Request baseRequest, HttpServletResponse response, long limit) throws IOException {
+        baseRequest.setHandled(true);
+        response.setStatus(413);
+        response.setContentType("application/json");
+        response.setHeader("Connection", "close");
+        response.getWriter().write("{\"status\":413,\"message\":\"Request body exceeds " + limit + " bytes\"}");
+    }
+
+    /**
+     * A request whose body stream fails once more than the limit has been read
+     */
+    private static final class LimitedRequest extends HttpServletRequestWrapper {
+        private final long limit;
+        private ServletInputStream in;
+        private volatile boolean exceeded;
+
+        LimitedRequest(HttpServletRequest request, long limit) {
+            super(request);
+            this.limit = limit;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (in == null) {
+                in = new LimitedInputStream(super.getInputStream());
+            }
+            return in;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        private final class LimitedInputStream extends ServletInputStream {
+            private final ServletInputStream delegate;
+            private long count;
+
+            LimitedInputStream(ServletInputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = delegate.read();
+                if (b >= 0) {
+                    counted(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                // Never ask for more than one byte past the limit
+                int n = delegate.read(b, off, (int) Math.min(len, limit - count + 1));
+                if (n > 0) {
+                    counted(n);
+                }
+                return n;
+            }
+
+            @Override
+            public boolean isFinished() {
+                return delegate.isFinished();
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                delegate.setReadListener(readListener);
+            }
+
+            private void counted(int n) throws IOException {
+                count += n;
+                if (count > limit) {
+                    exceeded = true;
+                    throw new IOException("Request body exceeds " + limit + " bytes");
+                }
+            }
+        }
+    }
+}
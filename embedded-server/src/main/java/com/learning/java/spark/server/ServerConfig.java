@@ -0,0 +1,134 @@
+package com.learning.java.spark.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Spark;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Embedded server settings, so each deployment can be sized without a rebuild
+ * <p>
+ * Every key is looked up as a system property (server.maxThreads), then as an environment
+ * variable (SERVER_MAX_THREADS), then in a properties file, then falls back to its default.
+ * The file is the one named by server.config / SERVER_CONFIG, or ./server.properties if present.
+ * <ul>
+ *     <li>server.port - listening port</li>
+ *     <li>server.threads - "platform" (default) or "virtual"</li>
+ *     <li>server.minThreads, server.maxThreads, server.threadIdleTimeoutMillis - platform pool size (8, 200, 60000)</li>
+ *     <li>server.acceptors, server.selectors - connector threads (-1 lets Jetty choose)</li>
+ *     <li>server.acceptQueueSize - pending connection backlog (0 uses the OS default)</li>
+ *     <li>server.idleTimeoutMillis - idle connection timeout (3600000)</li>
+ *     <li>server.maxRequestBytes - largest request body, larger ones get 413 (16 MB, -1 for no limit)</li>
+ *     <li>server.responseBufferSize - response bytes buffered before a chunk is sent (32768)</li>
+ * </ul>
+ * Routes that stream their body can get their own limit through {@link #withRequestLimit}.
+ */
+public record ServerConfig(int port, boolean virtualThreads, int minThreads, int maxThreads,
+                           int threadIdleTimeoutMillis, int acceptors, int selectors, int acceptQueueSize,
+                           long idleTimeoutMillis, long maxRequestBytes, int responseBufferSize,
+                           Map<String, Long> pathRequestLimits) {
+    private static final Logger log = LoggerFactory.getLogger(ServerConfig.class);
+
+    public ServerConfig {
+        if (minThreads < 1 || maxThreads < minThreads) {
+            throw new IllegalArgumentException("server threads must satisfy 1 <= minThreads <= maxThreads");
+        }
+        if (responseBufferSize < 1) {
+            throw new IllegalArgumentException("server.responseBufferSize must be positive");
+        }
+        pathRequestLimits = Map.copyOf(pathRequestLimits);
+    }
+
+    /**
+     * Read the configuration from the environment, using defaultPort when no port is set
+     */
+    public static ServerConfig load(int defaultPort) {
+        Properties file = loadFile();
+        String threads = lookup(file, "server.threads", "platform");
+        return new ServerConfig(
+                Integer.parseInt(lookup(file, "server.port", Integer.toString(defaultPort))),
+                "virtual".equalsIgnoreCase(threads),
+                Integer.parseInt(lookup(file, "server.minThreads", "8")),
+                Integer.parseInt(lookup(file, "server.maxThreads", "200")),
+                Integer.parseInt(lookup(file, "server.threadIdleTimeoutMillis", "60000")),
+                Integer.parseInt(lookup(file, "server.acceptors", "-1")),
+                Integer.parseInt(lookup(file, "server.selectors", "-1")),
+                Integer.parseInt(lookup(file, "server.acceptQueueSize", "0")),
+                Long.parseLong(lookup(file, "server.idleTimeoutMillis", "3600000")),
+                Long.parseLong(lookup(file, "server.maxRequestBytes", Long.toString(16L * 1024 * 1024))),
+                Integer.parseInt(lookup(file, "server.responseBufferSize", "32768")),
+                Map.of());
+    }
+
+    /**
+     * Copy of this configuration with its own body limit for one request path, -1 for no limit
+     */
+    public ServerConfig withRequestLimit(String path, long maxBytes) {
+        Map<String, Long> limits = new HashMap<>(pathRequestLimits);
+        limits.put(path, maxBytes);
+        return new ServerConfig(port, virtualThreads, minThreads, maxThreads, threadIdleTimeoutMillis, acceptors,
+                selectors, acceptQueueSize, idleTimeoutMillis, maxRequestBytes, responseBufferSize, limits);
+    }
+
+    /**
+     * Configure Spark's embedded Jetty; must be called before the first route is mapped
+     * The platform pool goes through Spark's threadPool(...); virtual threads and the
+     * connector settings go through a custom embedded server factory.
+     */
+    public void apply(String name) {
+        Spark.port(port);
+        EmbeddedJettyFactory factory = new EmbeddedJettyFactory(new TunedJettyServerFactory(this));
+        if (virtualThreads) {
+            factory.withThreadPool(new VirtualThreadPool(name));
+            log.info("Serving requests on virtual threads");
+        } else {
+            Spark.threadPool(maxThreads, minThreads, threadIdleTimeoutMillis);
+        }
+        EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, factory);
+    }
+
+    private static String lookup(Properties file, String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(environmentName(key));
+        }
+        if (value == null) {
+            value = file.getProperty(key);
+        }
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    /**
+     * server.maxThreads becomes SERVER_MAX_THREADS
+     */
+    static String environmentName(String key) {
+        return key.replaceAll("([a-z])([A-Z])", "$1_$2").replace('.', '_').toUpperCase(Locale.ROOT);
+    }
+
+    private static Properties loadFile() {
+        Properties properties = new Properties();
+        String configured = System.getProperty("server.config", System.getenv("SERVER_CONFIG"));
+        Path path = Path.of(configured != null ? configured : "server.properties");
+        if (configured == null && !Files.exists(path)) {
+            return properties;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            properties.load(in);
+            log.info("Loaded server configuration from {}", path.toAbsolutePath());
+            return properties;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read server configuration " + path, e);
+        }
+    }
+}
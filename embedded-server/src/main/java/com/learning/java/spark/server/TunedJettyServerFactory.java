@@ -0,0 +1,78 @@
+package com.learning.java.spark.server;
+
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import spark.embeddedserver.jetty.JettyServerFactory;
+
+/**
+ * Creates Spark's Jetty server with the connector and request settings from {@link ServerConfig}
+ * Spark adds its own connector and handler after creating the server, so they are adjusted
+ * when the server starts.
+ */
+class TunedJettyServerFactory implements JettyServerFactory {
+    private final ServerConfig config;
+
+    TunedJettyServerFactory(ServerConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public Server create(int maxThreads, int minThreads, int threadTimeoutMillis) {
+        return new TunedServer(new QueuedThreadPool(maxThreads, minThreads, threadTimeoutMillis), config);
+    }
+
+    @Override
+    public Server create(ThreadPool threadPool) {
+        return new TunedServer(threadPool, config);
+    }
+
+    private static final class TunedServer extends Server {
+        private final ServerConfig config;
+
+        TunedServer(ThreadPool threadPool, ServerConfig config) {
+            super(threadPool);
+            this.config = config;
+        }
+
+        @Override
+        protected void doStart() throws Exception {
+            Connector[] connectors = getConnectors();
+            for (int i = 0; i < connectors.length; i++) {
+                if (connectors[i] instanceof ServerConnector connector) {
+                    connectors[i] = tune(connector);
+                }
+            }
+            setConnectors(connectors);
+            boolean limited = config.maxRequestBytes() >= 0 || !config.pathRequestLimits().isEmpty();
+            if (limited && getHandler() != null) {
+                RequestLimitHandler limit = new RequestLimitHandler(config.maxRequestBytes(), config.pathRequestLimits());
+                limit.setHandler(getHandler());
+                setHandler(limit);
+            }
+            super.doStart();
+        }
+
+        /**
+         * Acceptor and selector counts are fixed at construction, so rebuild Spark's connector
+         */
+        private ServerConnector tune(ServerConnector original) {
+            ConnectionFactory[] factories = original.getConnectionFactories().toArray(new ConnectionFactory[0]);
+            for (ConnectionFactory factory : factories) {
+                if (factory instanceof HttpConnectionFactory http) {
+                    http.getHttpConfiguration().setOutputBufferSize(config.responseBufferSize());
+                }
+            }
+            ServerConnector connector = new ServerConnector(this, config.acceptors(), config.selectors(), factories);
+            connector.setHost(original.getHost());
+            connector.setPort(original.getPort());
+            connector.setIdleTimeout(config.idleTimeoutMillis());
+            connector.setAcceptQueueSize(config.acceptQueueSize());
+            return connector;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.learning.java.spark.server;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jetty thread pool that runs every task on its own virtual thread
+ * <p>
+ * A request that blocks parks its virtual thread instead of holding one of a fixed number of
+ * pool threads, so slow clients no longer use up the pool. Jetty 9.4 predates virtual threads,
+ * so its acceptor and selector loops run here too; the JDK adds carrier threads while they
+ * sit in select. Enabled with server.threads=virtual, see {@link ServerConfig}.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+    private final ThreadFactory threads;
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile CountDownLatch stopped = new CountDownLatch(1);
+
+    public VirtualThreadPool(String name) {
+        this.threads = Thread.ofVirtual().name(name + "-", 0).factory();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!isRunning()) {
+            throw new RejectedExecutionException("Thread pool is " + getState());
+        }
+        running.incrementAndGet();
+        threads.newThread(() -> {
+            try {
+                task.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        }).start();
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        stopped = new CountDownLatch(1);
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        stopped.countDown();
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Tasks currently running, each on its own virtual thread
+     */
+    @Override
+    public int getThreads() {
+        return running.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
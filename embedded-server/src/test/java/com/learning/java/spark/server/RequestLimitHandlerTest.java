@@ -0,0 +1,95 @@
+package com.learning.java.spark.server;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for request body limits on chunked bodies
+ */
+public class RequestLimitHandlerTest {
+    private static final int LIMIT = 64 * 1024;
+
+    private Server server;
+    private int port;
+
+    @BeforeEach
+    public void startServer() throws Exception {
+        server = new Server(0);
+        RequestLimitHandler limit = new RequestLimitHandler(LIMIT, Map.of("/stream", -1L));
+        // Reads the whole body like a route would, answering 400 when reading fails
+        limit.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                long count = 0;
+                try (InputStream in = request.getInputStream()) {
+                    byte[] buffer = new byte[8192];
+                    for (int n; (n = in.read(buffer)) > 0; ) {
+                        count += n;
+                    }
+                } catch (IOException e) {
+                    response.setStatus(400);
+                    return;
+                }
+                response.setStatus(200);
+                response.getWriter().write(Long.toString(count));
+            }
+        });
+        server.setHandler(limit);
+        server.start();
+        port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    }
+
+    @AfterEach
+    public void stopServer() throws Exception {
+        server.stop();
+    }
+
+    private HttpURLConnection postChunked(String path, int bytes) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create("http://localhost:" + port + path).toURL().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(4096);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(new byte[bytes]);
+        } catch (IOException e) {
+            // The server may answer and close before the whole body is sent
+        }
+        return connection;
+    }
+
+    @Test
+    public void testChunkedBodiesAreCountedNotBuffered() throws IOException {
+        HttpURLConnection small = postChunked("/products", LIMIT);
+        assertEquals(200, small.getResponseCode());
+        assertEquals(Integer.toString(LIMIT), new String(small.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+
+        HttpURLConnection large = postChunked("/products", LIMIT + 1);
+        assertEquals(413, large.getResponseCode());
+    }
+
+    @Test
+    public void testPathWithoutLimitTakesLargeBodies() throws IOException {
+        HttpURLConnection large = postChunked("/stream", 4 * 1024 * 1024);
+        assertEquals(200, large.getResponseCode());
+        assertEquals(Integer.toString(4 * 1024 * 1024), new String(large.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+    }
+}
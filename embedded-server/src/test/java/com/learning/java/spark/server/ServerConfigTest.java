@@ -0,0 +1,61 @@
+package com.learning.java.spark.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for how server settings are looked up
+ */
+public class ServerConfigTest {
+
+    @AfterEach
+    public void clearProperties() {
+        System.clearProperty("server.config");
+        System.clearProperty("server.maxThreads");
+    }
+
+    @Test
+    public void testDefaults() {
+        ServerConfig config = ServerConfig.load(9000);
+
+        assertEquals(9000, config.port());
+        assertFalse(config.virtualThreads());
+        assertEquals(8, config.minThreads());
+        assertEquals(200, config.maxThreads());
+        assertEquals(16L * 1024 * 1024, config.maxRequestBytes());
+    }
+
+    @Test
+    public void testSystemPropertyOverridesFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("server.properties");
+        Files.writeString(file, "server.port=9100\nserver.maxThreads=64\nserver.threads=virtual\n");
+        System.setProperty("server.config", file.toString());
+        System.setProperty("server.maxThreads", "32");
+
+        ServerConfig config = ServerConfig.load(9000);
+
+        assertEquals(9100, config.port());
+        assertEquals(32, config.maxThreads());
+        assertTrue(config.virtualThreads());
+    }
+
+    @Test
+    public void testInvalidThreadBoundsAreRejected() {
+        System.setProperty("server.maxThreads", "4");
+
+        assertThrows(IllegalArgumentException.class, () -> ServerConfig.load(9000));
+    }
+
+    @Test
+    public void testEnvironmentNames() {
+        assertEquals("SERVER_MAX_THREADS", ServerConfig.environmentName("server.maxThreads"));
+        assertEquals("SERVER_PORT", ServerConfig.environmentName("server.port"));
+    }
+}
@@ -1,6 +1,7 @@
 package com.learning.java.spark.hello_world;
 
 import com.google.gson.Gson;
+import com.learning.java.spark.server.ServerConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,8 +17,9 @@ public class HelloWorldApplication {
 
     public static void main(String[] args) {
 
-        // Configure port (default 4567)
-        port(portNumber);
+        // Configure the server from system properties, environment or server.properties; port 8080 unless set
+        ServerConfig serverConfig = ServerConfig.load(portNumber);
+        serverConfig.apply("hello-world");
 
         // Enable CORS for development
         enableCORS();
@@ -28,7 +30,7 @@ public class HelloWorldApplication {
         // Exception handling
         setupExceptionHandlers();
 
-        log.info("Hello World Server started on http://localhost:{}", portNumber);
+        log.info("Hello World Server started on http://localhost:{}", serverConfig.port());
     }
 
     private static void defineRoutes() {
@@ -0,0 +1,167 @@
+package com.learning.java.spark.loadtest;
+
+import com.learning.java.spark.rest_api_demo.RestApiApplication;
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.util.JsonUtil;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Spark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a mixed read/write workload at the REST API and reports throughput and latency percentiles
+ * Unless loadtest.baseUrl points elsewhere, the server is booted in this JVM and the run starts once
+ * Spark reports it initialized. The catalog is seeded through the bulk endpoint before the clock starts.
+ */
+public class LoadTest {
+    private static final Logger log = LoggerFactory.getLogger(LoadTest.class);
+    private static final int SEED_BATCH = 10_000;
+    private static final int ID_PAGE = 1000;
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        boolean inProcess = config.baseUrl() == null;
+        String baseUrl = inProcess ? startServer() : config.baseUrl();
+
+        try {
+            LoadTestReport report = run(config, baseUrl);
+            System.out.print(report.format());
+            if (config.output() != null) {
+                Files.writeString(Path.of(config.output()), JsonUtil.toJson(report, true));
+                log.info("Report written to {}", config.output());
+            }
+        } finally {
+            if (inProcess) {
+                Spark.stop();
+                Spark.awaitStop();
+            }
+        }
+    }
+
+    /**
+     * Boot the REST API in this JVM and block until it accepts connections
+     */
+    static String startServer() {
+        RestApiApplication.main(new String[]{});
+        Spark.awaitInitialization();
+        return "http://localhost:" + Spark.port();
+    }
+
+    public static LoadTestReport run(LoadTestConfig config, String baseUrl) throws IOException, InterruptedException {
+        List<String> ids = seed(baseUrl, config.catalogSize());
+        Workload workload = new Workload(baseUrl, config.readRatio(), ids);
+        log.info("Catalog has {} products; warming up for {}s, then measuring for {}s",
+                ids.size(), config.warmupSeconds(), config.durationSeconds());
+
+        long intervalNanos = config.intervalNanos();
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.warmupSeconds());
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(config.durationSeconds());
+
+        List<Worker> workers = new ArrayList<>(config.concurrency());
+        List<Thread> threads = new ArrayList<>(config.concurrency());
+        for (int i = 0; i < config.concurrency(); i++) {
+            // Spread the workers' schedules over one interval so a throttled run does not send in bursts
+            long firstStart = start + intervalNanos * i / config.concurrency();
+            Worker worker = new Worker(workload, i, firstStart, measureFrom, end, intervalNanos);
+            Thread thread = new Thread(worker, "load-" + i);
+            workers.add(worker);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return report(config, workers);
+    }
+
+    private static LoadTestReport report(LoadTestConfig config, List<Worker> workers) {
+        Histogram serviceTime = Worker.newHistogram();
+        Histogram responseTime = Worker.newHistogram();
+        Map<Operation, Histogram> operations = new EnumMap<>(Operation.class);
+        long errors = 0;
+        for (Worker worker : workers) {
+            Histogram workerServiceTime = Worker.newHistogram();
+            worker.serviceTimes().forEach((operation, histogram) -> {
+                workerServiceTime.add(histogram);
+                operations.computeIfAbsent(operation, o -> Worker.newHistogram()).add(histogram);
+            });
+            serviceTime.add(workerServiceTime);
+            if (config.rate() > 0) {
+                responseTime.add(worker.responseTime());
+            } else if (workerServiceTime.getTotalCount() > 0) {
+                // Back to back, a worker meant to send every mean service time; backfill the requests a stall held up
+                long expectedInterval = Math.max(1, (long) workerServiceTime.getMean());
+                responseTime.add(workerServiceTime.copyCorrectedForCoordinatedOmission(expectedInterval));
+            }
+            errors += worker.errors();
+        }
+
+        Map<Operation, LoadTestReport.Latency> perOperation = new EnumMap<>(Operation.class);
+        operations.forEach((operation, histogram) -> perOperation.put(operation, LoadTestReport.Latency.of(histogram)));
+        long requests = serviceTime.getTotalCount();
+        return new LoadTestReport(config, requests, errors, requests / (double) config.durationSeconds(),
+                LoadTestReport.Latency.of(serviceTime), LoadTestReport.Latency.of(responseTime), perOperation);
+    }
+
+    /**
+     * Create the catalog through the bulk endpoint and return the IDs of every product the server then lists
+     */
+    static List<String> seed(String baseUrl, int catalogSize) throws IOException, InterruptedException {
+        try (HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            for (int from = 0; from < catalogSize; from += SEED_BATCH) {
+                StringBuilder ndjson = new StringBuilder();
+                for (int n = from; n < Math.min(catalogSize, from + SEED_BATCH); n++) {
+                    ndjson.append(JsonUtil.toJson(Workload.product(n))).append('\n');
+                }
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/products/_bulk"))
+                        .header("Content-Type", "application/x-ndjson")
+                        .POST(HttpRequest.BodyPublishers.ofString(ndjson.toString()))
+                        .build(), HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    throw new IOException("Seeding failed with status " + response.statusCode() + ": " + response.body());
+                }
+            }
+
+            List<String> ids = new ArrayList<>(catalogSize);
+            String next = "/api/products?limit=" + ID_PAGE;
+            while (next != null) {
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + next)).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    throw new IOException("Listing products failed with status " + response.statusCode());
+                }
+                for (Product product : JsonUtil.fromJson(response.body(), Product[].class)) {
+                    ids.add(product.getId());
+                }
+                next = response.headers().firstValue("Link").map(LoadTest::nextPath).orElse(null);
+            }
+            if (ids.isEmpty()) {
+                throw new IOException("The server lists no products");
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Target of a Link: &lt;/api/products?cursor=...&gt;; rel="next" header
+     */
+    private static String nextPath(String link) {
+        int open = link.indexOf('<');
+        int close = link.indexOf('>', open + 1);
+        return open < 0 || close < 0 ? null : link.substring(open + 1, close);
+    }
+}
@@ -0,0 +1,58 @@
+package com.learning.java.spark.loadtest;
+
+/**
+ * Workload and target of a load test run
+ *
+ * @param baseUrl         server to drive, or null to boot the REST API in this JVM
+ * @param catalogSize     products created before the run
+ * @param readRatio       share of requests that are reads, from 0 to 1
+ * @param concurrency     number of workers, each with its own keep-alive connection
+ * @param rate            intended requests per second across all workers, or 0 to send as fast as responses come back
+ * @param warmupSeconds   seconds of load that are not measured
+ * @param durationSeconds seconds of measured load
+ * @param output          file to write the JSON report to, or null
+ */
+public record LoadTestConfig(String baseUrl, int catalogSize, double readRatio, int concurrency,
+                             int rate, int warmupSeconds, int durationSeconds, String output) {
+
+    public LoadTestConfig {
+        if (catalogSize < 1) {
+            throw new IllegalArgumentException("loadtest.catalogSize must be positive");
+        }
+        if (readRatio < 0 || readRatio > 1) {
+            throw new IllegalArgumentException("loadtest.readRatio must be between 0 and 1");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("loadtest.concurrency must be positive");
+        }
+        if (rate < 0) {
+            throw new IllegalArgumentException("loadtest.rate must not be negative");
+        }
+        if (warmupSeconds < 0 || durationSeconds < 1) {
+            throw new IllegalArgumentException("loadtest.durationSeconds must be positive and loadtest.warmupSeconds not negative");
+        }
+    }
+
+    /**
+     * Read loadtest.* system properties, defaulting to a 90% read workload from 16 workers for 30 seconds
+     * The in-process server takes its port from server.port like any other run.
+     */
+    public static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig(
+                System.getProperty("loadtest.baseUrl"),
+                Integer.getInteger("loadtest.catalogSize", 10_000),
+                Double.parseDouble(System.getProperty("loadtest.readRatio", "0.9")),
+                Integer.getInteger("loadtest.concurrency", 16),
+                Integer.getInteger("loadtest.rate", 0),
+                Integer.getInteger("loadtest.warmupSeconds", 10),
+                Integer.getInteger("loadtest.durationSeconds", 30),
+                System.getProperty("loadtest.output"));
+    }
+
+    /**
+     * Time each worker should leave between request starts, or 0 when the run is unthrottled
+     */
+    public long intervalNanos() {
+        return rate == 0 ? 0 : 1_000_000_000L * concurrency / rate;
+    }
+}
@@ -0,0 +1,61 @@
+package com.learning.java.spark.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+
+/**
+ * Outcome of a load test run
+ *
+ * @param config            workload that was run
+ * @param requests          requests sent during the measured period
+ * @param errors            requests that failed or answered 4xx/5xx
+ * @param requestsPerSecond measured throughput
+ * @param serviceTime       latency from sending a request to its response
+ * @param responseTime      latency from when a request should have been sent, corrected for coordinated omission
+ * @param operations        service time per kind of request
+ */
+public record LoadTestReport(LoadTestConfig config, long requests, long errors, double requestsPerSecond,
+                             Latency serviceTime, Latency responseTime, Map<Operation, Latency> operations) {
+
+    /**
+     * Latency distribution in milliseconds
+     */
+    public record Latency(long count, double meanMillis, double p50Millis, double p90Millis, double p99Millis,
+                          double p999Millis, double maxMillis) {
+
+        static Latency of(Histogram micros) {
+            return new Latency(micros.getTotalCount(),
+                    micros.getMean() / 1000.0,
+                    micros.getValueAtPercentile(50) / 1000.0,
+                    micros.getValueAtPercentile(90) / 1000.0,
+                    micros.getValueAtPercentile(99) / 1000.0,
+                    micros.getValueAtPercentile(99.9) / 1000.0,
+                    micros.getMaxValue() / 1000.0);
+        }
+    }
+
+    /**
+     * Human-readable summary, one distribution per line
+     */
+    public String format() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%d requests in %ds from %d workers (%s), %.1f%% reads, %d errors%n",
+                requests, config.durationSeconds(), config.concurrency(),
+                config.rate() == 0 ? "unthrottled" : config.rate() + " req/s intended",
+                config.readRatio() * 100, errors));
+        out.append(String.format("throughput %.1f req/s%n", requestsPerSecond));
+        out.append(String.format("%-22s %9s %9s %9s %9s %9s %9s %9s%n",
+                "latency (ms)", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+        line(out, "response time", responseTime);
+        line(out, "service time", serviceTime);
+        operations.forEach((operation, latency) -> line(out, "  " + operation.name().toLowerCase(), latency));
+        return out.toString();
+    }
+
+    private static void line(StringBuilder out, String label, Latency latency) {
+        out.append(String.format("%-22s %9d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", label, latency.count(),
+                latency.meanMillis(), latency.p50Millis(), latency.p90Millis(), latency.p99Millis(),
+                latency.p999Millis(), latency.maxMillis()));
+    }
+}
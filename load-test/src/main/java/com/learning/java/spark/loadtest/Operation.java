@@ -0,0 +1,12 @@
+package com.learning.java.spark.loadtest;
+
+/**
+ * Kinds of request a worker sends
+ * Reads are mostly single products with some category listings; writes are updates and creates in equal measure.
+ */
+public enum Operation {
+    GET_PRODUCT,
+    LIST_CATEGORY,
+    UPDATE_PRODUCT,
+    CREATE_PRODUCT
+}
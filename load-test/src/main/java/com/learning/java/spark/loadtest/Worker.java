@@ -0,0 +1,113 @@
+package com.learning.java.spark.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One load generator with its own keep-alive connection
+ * With a target rate every request has an intended start time, and its response time is measured
+ * from that time rather than from when it was actually sent. A stalled server therefore shows up
+ * as latency for every request that should have gone out during the stall, not only for the one
+ * that was in flight; this is the coordinated-omission correction. Without a rate the worker sends
+ * back to back and only service time is measured; LoadTest corrects that afterwards.
+ */
+final class Worker implements Runnable {
+    static final long HIGHEST_TRACKABLE_MICROS = 60_000_000L;
+
+    private final Workload workload;
+    private final SplittableRandom random;
+    private final long firstStart;
+    private final long measureFrom;
+    private final long end;
+    private final long intervalNanos;
+    private final Map<Operation, Histogram> serviceTimes = new EnumMap<>(Operation.class);
+    private final Histogram responseTime = newHistogram();
+    private long errors;
+
+    Worker(Workload workload, long seed, long firstStart, long measureFrom, long end, long intervalNanos) {
+        this.workload = workload;
+        this.random = new SplittableRandom(seed);
+        this.firstStart = firstStart;
+        this.measureFrom = measureFrom;
+        this.end = end;
+        this.intervalNanos = intervalNanos;
+        for (Operation operation : Operation.values()) {
+            serviceTimes.put(operation, newHistogram());
+        }
+    }
+
+    static Histogram newHistogram() {
+        return new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+    }
+
+    @Override
+    public void run() {
+        try (HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            long intended = firstStart;
+            while (true) {
+                if (intervalNanos > 0) {
+                    long wait;
+                    while ((wait = intended - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                } else {
+                    intended = System.nanoTime();
+                }
+                if (intended - end >= 0) {
+                    return;
+                }
+
+                Operation operation = workload.next(random);
+                long sent = System.nanoTime();
+                boolean ok;
+                try {
+                    int status = client.send(workload.request(operation, random),
+                            HttpResponse.BodyHandlers.discarding()).statusCode();
+                    ok = status < 400;
+                } catch (IOException e) {
+                    ok = false;
+                }
+                long done = System.nanoTime();
+
+                if (intended - measureFrom >= 0) {
+                    serviceTimes.get(operation).recordValue(micros(done - sent));
+                    if (intervalNanos > 0) {
+                        responseTime.recordValue(micros(done - intended));
+                    }
+                    if (!ok) {
+                        errors++;
+                    }
+                }
+                intended += intervalNanos;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long micros(long nanos) {
+        return Math.min(nanos / 1000, HIGHEST_TRACKABLE_MICROS);
+    }
+
+    Map<Operation, Histogram> serviceTimes() {
+        return serviceTimes;
+    }
+
+    /**
+     * Latency from intended start, only recorded when the run has a target rate
+     */
+    Histogram responseTime() {
+        return responseTime;
+    }
+
+    long errors() {
+        return errors;
+    }
+}
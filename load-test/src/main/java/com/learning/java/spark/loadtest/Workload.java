@@ -0,0 +1,85 @@
+package com.learning.java.spark.loadtest;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.util.JsonUtil;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Mix of reads and writes against a known set of products
+ * Requests are built up front where possible so the workers measure the server, not the generator.
+ */
+final class Workload {
+    static final String[] CATEGORIES = {
+            "Electronics", "Accessories", "Furniture", "Office", "Kitchen",
+            "Garden", "Toys", "Books", "Sports", "Clothing"};
+    private static final int LISTING_LIMIT = 20;
+    private static final int BODIES = 64;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final double readRatio;
+    private final HttpRequest[] reads;
+    private final HttpRequest[] listings;
+    private final String[] ids;
+    private final String[] bodies;
+
+    Workload(String baseUrl, double readRatio, List<String> ids) {
+        this.baseUrl = baseUrl;
+        this.readRatio = readRatio;
+        this.ids = ids.toArray(new String[0]);
+        this.reads = new HttpRequest[this.ids.length];
+        for (int i = 0; i < this.ids.length; i++) {
+            reads[i] = get("/api/products/" + this.ids[i]);
+        }
+        this.listings = new HttpRequest[CATEGORIES.length];
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            listings[i] = get("/api/products?category=" + CATEGORIES[i] + "&limit=" + LISTING_LIMIT);
+        }
+        this.bodies = new String[BODIES];
+        for (int i = 0; i < BODIES; i++) {
+            bodies[i] = JsonUtil.toJson(product(i));
+        }
+    }
+
+    /**
+     * Generated product n; the same n always gives the same product
+     */
+    static Product product(int n) {
+        return new Product(null, "Load test product " + n, "Generated for load testing, number " + n,
+                1 + (n % 1000) * 0.25, n % 100, CATEGORIES[n % CATEGORIES.length]);
+    }
+
+    Operation next(SplittableRandom random) {
+        if (random.nextDouble() < readRatio) {
+            return random.nextInt(10) == 0 ? Operation.LIST_CATEGORY : Operation.GET_PRODUCT;
+        }
+        return random.nextBoolean() ? Operation.UPDATE_PRODUCT : Operation.CREATE_PRODUCT;
+    }
+
+    HttpRequest request(Operation operation, SplittableRandom random) {
+        return switch (operation) {
+            case GET_PRODUCT -> reads[random.nextInt(reads.length)];
+            case LIST_CATEGORY -> listings[random.nextInt(listings.length)];
+            case UPDATE_PRODUCT -> send("PUT", "/api/products/" + ids[random.nextInt(ids.length)],
+                    bodies[random.nextInt(bodies.length)]);
+            case CREATE_PRODUCT -> send("POST", "/api/products", bodies[random.nextInt(bodies.length)]);
+        };
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+
+    private HttpRequest send(String method, String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
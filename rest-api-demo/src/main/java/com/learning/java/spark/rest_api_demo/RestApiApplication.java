@@ -1,11 +1,33 @@
 package com.learning.java.spark.rest_api_demo;
 
+import com.learning.java.spark.rest_api_demo.cache.ResponseCache;
+import com.learning.java.spark.rest_api_demo.controller.ChangeFeedController;
+import com.learning.java.spark.rest_api_demo.controller.MetricsController;
 import com.learning.java.spark.rest_api_demo.controller.ProductController;
+import com.learning.java.spark.rest_api_demo.controller.ReservationController;
+import com.learning.java.spark.rest_api_demo.metrics.RequestMetrics;
+import com.learning.java.spark.rest_api_demo.metrics.RequestProfiler;
+import com.learning.java.spark.rest_api_demo.model.ApiError;
+import com.learning.java.spark.rest_api_demo.model.HealthResponse;
 import com.learning.java.spark.rest_api_demo.service.ProductService;
+import com.learning.java.spark.rest_api_demo.service.ReservationService;
+import com.learning.java.spark.rest_api_demo.service.feed.ChangeFeed;
+import com.learning.java.spark.rest_api_demo.service.feed.ChangeFeedSettings;
+import com.learning.java.spark.rest_api_demo.service.id.IdGenerators;
+import com.learning.java.spark.rest_api_demo.service.persistence.ReservationJournal;
+import com.learning.java.spark.rest_api_demo.service.persistence.SnapshotSettings;
+import com.learning.java.spark.rest_api_demo.service.persistence.WalSettings;
+import com.learning.java.spark.rest_api_demo.service.store.ProductStores;
 import com.learning.java.spark.rest_api_demo.util.JsonUtil;
+import com.learning.java.spark.rest_api_demo.util.ResponseCompressor;
+import com.learning.java.spark.server.ServerConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
 import static spark.Spark.*;
 
 
@@ -14,15 +36,45 @@ public class RestApiApplication {
     private static final int portNumber = 8081;
 
     public static void main(String[] args) {
-        // Configure server
-        port(portNumber);
+        // Configure server from system properties, environment or server.properties;
+        // bulk NDJSON is parsed as it arrives, so it has its own body limit, none by default
+        ServerConfig serverConfig = ServerConfig.load(portNumber)
+                .withRequestLimit("/api/products/_bulk", Long.getLong("products.bulk.maxRequestBytes", -1));
+        serverConfig.apply("rest-api");
+
+        // Time every request, from the first before filter to the last afterAfter filter;
+        // -Dprofiling.sampleEvery=N also profiles allocation and CPU time of one request in N
+        RequestMetrics requestMetrics = new RequestMetrics(
+                RequestProfiler.fromSystemProperties(serverConfig.virtualThreads()), serverConfig.virtualThreads());
+        before(requestMetrics.begin());
 
         // Enable CORS for all routes
         enableCORS();
 
         // Initialize services
-        ProductService productService = new ProductService();
-        ProductController productController = new ProductController(productService);
+        ProductService productService = new ProductService(
+                IdGenerators.fromSystemProperties(),
+                WalSettings.fromSystemProperties(),
+                SnapshotSettings.fromSystemProperties(),
+                ProductStores.fromSystemProperties());
+        ChangeFeed changeFeed = new ChangeFeed(ChangeFeedSettings.fromSystemProperties());
+        productService.addChangeListener(changeFeed);
+        ReservationService reservationService = new ReservationService(productService, openReservationJournal());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            changeFeed.close();
+            reservationService.close();
+            try {
+                productService.close();
+            } catch (Exception e) {
+                log.error("failed to close product service: {}", e.getMessage());
+            }
+        }, "product-service-shutdown"));
+        ResponseCache responseCache = ResponseCache.fromSystemProperties();
+        ResponseCompressor responseCompressor = ResponseCompressor.fromSystemProperties();
+        ProductController productController = new ProductController(productService, responseCache, responseCompressor);
+        ReservationController reservationController = new ReservationController(reservationService);
+        ChangeFeedController changeFeedController = new ChangeFeedController(changeFeed);
+        MetricsController metricsController = new MetricsController(requestMetrics, responseCache, responseCompressor);
 
         // Global exception handling
         setupExceptionHandlers();
@@ -31,28 +83,63 @@ public class RestApiApplication {
         path("/api", () -> {
             // Products endpoints
             path("/products", () -> {
-                get("", productController.getAllProducts());
-                get("/:id", productController.getProductById());
-                post("", productController.createProduct());
-                put("/:id", productController.updateProduct());
-                delete("/:id", productController.deleteProduct());
+                get("", requestMetrics.timed(productController.getAllProducts()));
+                get("/search", requestMetrics.timed(productController.searchProducts()));
+                get("/stats", requestMetrics.timed(productController.getStats()));
+                get("/changes", requestMetrics.timed(changeFeedController.streamChanges()));
+                get("/:id", requestMetrics.timed(productController.getProductById()));
+                post("", requestMetrics.timed(productController.createProduct()));
+                post("/_bulk", requestMetrics.timed(productController.bulkCreateProducts()));
+                put("/:id", requestMetrics.timed(productController.updateProduct()));
+                patch("/:id", requestMetrics.timed(productController.patchProduct()));
+                delete("/:id", requestMetrics.timed(productController.deleteProduct()));
+
+                // Stock reservations
+                post("/:id/reserve", requestMetrics.timed(reservationController.reserve()));
+                post("/:id/release", requestMetrics.timed(reservationController.release()));
+                post("/:id/confirm", requestMetrics.timed(reservationController.confirm()));
             });
 
+            // Metrics endpoints
+            get("/metrics", requestMetrics.timed(metricsController.getMetrics()));
+            get("/metrics/cache", requestMetrics.timed(metricsController.getCacheMetrics()));
+            get("/metrics/compression", requestMetrics.timed(metricsController.getCompressionMetrics()));
+
+            // Profiling endpoints
+            get("/admin/profile", requestMetrics.timed(metricsController.getProfile()));
+            post("/admin/profile", requestMetrics.timed(metricsController.updateProfile()));
+
             // Health check endpoint
-            get("/health", (req, res) -> {
+            get("/health", requestMetrics.timed((req, res) -> {
                 res.type("application/json");
-                return JsonUtil.toJson(new HealthResponse("UP", "Service is running"));
-            });
+                return JsonUtil.toJson(new HealthResponse("UP", "Service is running"), JsonUtil.isPrettyRequested(req));
+            }));
         });
+        afterAfter(requestMetrics.end());
 
         // 404 handler
         notFound((req, res) -> {
             res.type("application/json");
-            return JsonUtil.toJson(new ErrorResponse(404, "Route not found"));
+            return JsonUtil.toJson(new ApiError(404, "Route not found"));
         });
 
-        log.info("REST API Server started on http://localhost:{}", portNumber);
-        log.info("Try: http://localhost:{}/api/health", portNumber);
+        log.info("REST API Server started on http://localhost:{}", serverConfig.port());
+        log.info("Try: http://localhost:{}/api/health", serverConfig.port());
+    }
+
+    /**
+     * Open the reservation journal, or return null when the catalog is not persisted either
+     */
+    private static ReservationJournal openReservationJournal() {
+        Path path = ReservationJournal.pathFromSystemProperties();
+        if (path == null) {
+            return null;
+        }
+        try {
+            return ReservationJournal.open(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the reservation journal " + path, e);
+        }
     }
 
     /**
@@ -75,7 +162,7 @@ public class RestApiApplication {
 
         before((request, response) -> {
             response.header("Access-Control-Allow-Origin", "*");
-            response.header("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
+            response.header("Access-Control-Allow-Methods", "GET, POST, PUT, PATCH, DELETE, OPTIONS");
             response.header("Access-Control-Allow-Headers", "Content-Type, Authorization");
             response.type("application/json");
         });
@@ -88,20 +175,14 @@ public class RestApiApplication {
         exception(IllegalArgumentException.class, (e, req, res) -> {
             res.status(400);
             res.type("application/json");
-            res.body(JsonUtil.toJson(new ErrorResponse(400, e.getMessage())));
+            res.body(JsonUtil.toJson(new ApiError(400, e.getMessage())));
         });
 
         exception(Exception.class, (e, req, res) -> {
             res.status(500);
             res.type("application/json");
-            res.body(JsonUtil.toJson(new ErrorResponse(500, "Internal server error")));
+            res.body(JsonUtil.toJson(new ApiError(500, "Internal server error")));
             log.error("exception with message {}", e.getMessage());
         });
     }
-
-    record HealthResponse(String status, String message) {
-    }
-
-    record ErrorResponse(int status, String message) {
-    }
 }
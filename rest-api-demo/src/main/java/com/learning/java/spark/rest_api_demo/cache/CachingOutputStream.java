@@ -0,0 +1,52 @@
+package com.learning.java.spark.rest_api_demo.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Passes bytes through to the response while keeping a copy for the cache
+ * The copy is abandoned once it grows past the limit, so streaming a large body
+ * never buffers more than that.
+ */
+public class CachingOutputStream extends FilterOutputStream {
+    private final int limit;
+    private ByteArrayOutputStream copy = new ByteArrayOutputStream(4096);
+
+    public CachingOutputStream(OutputStream out, int limit) {
+        super(out);
+        this.limit = limit;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        if (copy != null) {
+            copy.write(b);
+            checkLimit();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        if (copy != null) {
+            copy.write(b, off, len);
+            checkLimit();
+        }
+    }
+
+    /**
+     * Everything written so far, or null if it outgrew the limit
+     */
+    public byte[] copy() {
+        return copy == null ? null : copy.toByteArray();
+    }
+
+    private void checkLimit() {
+        if (copy.size() > limit) {
+            copy = null;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.learning.java.spark.rest_api_demo.cache;
+
+import com.learning.java.spark.rest_api_demo.util.ResponseCompressor.Deflated;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of pre-encoded response bodies
+ * <p>
+ * Every entry remembers the version of the data it was encoded from, and a lookup only
+ * hits when the caller's current version matches, so a stale body is never served even
+ * if it races with a write. Writes also invalidate affected entries eagerly to free memory.
+ * <p>
+ * The cache is capped by total body bytes. When a put crosses the cap, one thread evicts
+ * entries until usage is back under 90% of it, preferring entries that are both large and
+ * long idle (idle ticks multiplied by size), so one huge cold listing goes before many
+ * small hot products.
+ */
+public class ResponseCache {
+    private static final double LOW_WATERMARK = 0.9;
+
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Cache counters at one point in time
+     */
+    public record Stats(long hits, long misses, long evictions, long entries, long bytes, long maxBytes) {
+    }
+
+    /**
+     * An encoded response body, with the Link header that goes with it when it is a page,
+     * and its deflated form when it is large enough to be sent compressed
+     */
+    public record CachedBody(byte[] body, String link, Deflated deflated) {
+        public int size() {
+            return body.length + (deflated == null ? 0 : deflated.data().length);
+        }
+    }
+
+    private static final class Entry {
+        final long version;
+        final CachedBody body;
+        volatile long lastAccess;
+
+        Entry(long version, CachedBody body, long lastAccess) {
+            this.version = version;
+            this.body = body;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private record Candidate(String key, Entry entry, double score) {
+    }
+
+    /**
+     * @param maxBytes      total body bytes kept; 0 disables the cache
+     * @param maxEntryBytes largest single body that is cached
+     */
+    public ResponseCache(long maxBytes, int maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    /**
+     * Build the cache described by system properties
+     * <ul>
+     *     <li>products.cache.maxBytes - total size cap (default 64 MB, 0 disables)</li>
+     *     <li>products.cache.maxEntryBytes - largest cached body (default 1 MB)</li>
+     * </ul>
+     */
+    public static ResponseCache fromSystemProperties() {
+        return new ResponseCache(
+                Long.getLong("products.cache.maxBytes", 64L * 1024 * 1024),
+                Integer.getInteger("products.cache.maxEntryBytes", 1024 * 1024));
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    public int maxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public static String productKey(String id, boolean pretty) {
+        return (pretty ? "P:" : "p:") + id;
+    }
+
+    public static String listKey(String queryString, boolean pretty) {
+        return (pretty ? "L:" : "l:") + (queryString == null ? "" : queryString);
+    }
+
+    /**
+     * Cached body for the key, or null unless it was encoded at exactly this version
+     */
+    public CachedBody get(String key, long version) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.version != version) {
+            if (entries.remove(key, entry)) {
+                usedBytes.addAndGet(-entry.body.size());
+            }
+            misses.increment();
+            return null;
+        }
+        entry.lastAccess = clock.incrementAndGet();
+        hits.increment();
+        return entry.body;
+    }
+
+    /**
+     * Cache a body encoded from data at the given version
+     */
+    public void put(String key, long version, CachedBody body) {
+        if (!isEnabled() || body.size() > maxEntryBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(version, body, clock.incrementAndGet()));
+        long used = usedBytes.addAndGet(body.size() - (previous == null ? 0 : previous.body.size()));
+        if (used > maxBytes) {
+            evict();
+        }
+    }
+
+    /**
+     * Drop a product's cached bodies
+     */
+    public void invalidateProduct(String id) {
+        invalidate(productKey(id, false));
+        invalidate(productKey(id, true));
+    }
+
+    public void invalidate(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            usedBytes.addAndGet(-removed.body.size());
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size(), usedBytes.get(), maxBytes);
+    }
+
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long target = (long) (maxBytes * LOW_WATERMARK);
+            if (usedBytes.get() <= target) {
+                return;
+            }
+            // Score once up front: lastAccess keeps moving while we sort
+            long now = clock.get();
+            List<Candidate> candidates = new ArrayList<>(entries.size());
+            entries.forEach((key, entry) ->
+                    candidates.add(new Candidate(key, entry, (double) (now - entry.lastAccess + 1) * entry.body.size())));
+            candidates.sort(Comparator.comparingDouble(Candidate::score).reversed());
+            for (Candidate candidate : candidates) {
+                if (usedBytes.get() <= target) {
+                    break;
+                }
+                if (entries.remove(candidate.key(), candidate.entry())) {
+                    usedBytes.addAndGet(-candidate.entry().body.size());
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.learning.java.spark.rest_api_demo.controller;
+
+import com.learning.java.spark.rest_api_demo.model.ErrorResponse;
+import com.learning.java.spark.rest_api_demo.service.feed.ChangeFeed;
+import com.learning.java.spark.rest_api_demo.util.JsonUtil;
+import spark.Route;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Controller for the product change feed
+ * A subscriber holds its request thread for as long as it stays connected, which is why the
+ * feed caps their number; server.threads=virtual makes each one cheap.
+ */
+public record ChangeFeedController(ChangeFeed changeFeed) {
+    static final int RETRY_MILLIS = 3000;
+
+    /**
+     * GET /api/products/changes - Stream product changes as Server-Sent Events
+     * Events are named created, updated or deleted and carry the change as JSON. Sending the last
+     * event ID back in Last-Event-ID resumes after a reconnect. A "reset" event means changes were
+     * missed, because the ID is unknown or the client fell a buffer behind, so the client should
+     * reload what it tracks. Comment lines keep idle connections alive.
+     * Answers 503 when every subscriber slot is taken.
+     */
+    public Route streamChanges() {
+        return (req, res) -> {
+            Optional<ChangeFeed.Cursor> subscription = changeFeed.subscribe(req.headers("Last-Event-ID"));
+            if (subscription.isEmpty()) {
+                res.status(503);
+                res.header("Retry-After", Integer.toString(RETRY_MILLIS / 1000));
+                return JsonUtil.toJson(new ErrorResponse("Too many change feed subscribers"), JsonUtil.isPrettyRequested(req));
+            }
+
+            res.status(200);
+            res.type("text/event-stream;charset=utf-8");
+            res.header("Cache-Control", "no-cache");
+            try (ChangeFeed.Cursor cursor = subscription.get();
+                 Writer out = new OutputStreamWriter(res.raw().getOutputStream(), StandardCharsets.UTF_8)) {
+                out.write("retry: " + RETRY_MILLIS + "\n\n");
+                out.flush();
+                stream(cursor, out);
+            } catch (IOException | InterruptedException e) {
+                // The client went away or the server is stopping
+            }
+            return "";
+        };
+    }
+
+    /**
+     * Write changes until the feed closes, flushing once per batch of ready changes
+     */
+    private void stream(ChangeFeed.Cursor cursor, Writer out) throws IOException, InterruptedException {
+        boolean unflushed = false;
+        while (!changeFeed.isClosed()) {
+            if (cursor.takeGap()) {
+                out.write("event: reset\ndata: {}\n\n");
+                unflushed = true;
+            }
+            ChangeFeed.Event event = cursor.next(unflushed ? 0 : changeFeed.heartbeatMillis());
+            if (event != null) {
+                out.write("id: " + event.id() + "\nevent: " + event.change().type().eventName()
+                        + "\ndata: " + JsonUtil.toJson(event.change()) + "\n\n");
+                unflushed = true;
+            } else if (unflushed) {
+                out.flush();
+                unflushed = false;
+            } else {
+                out.write(":\n\n");
+                out.flush();
+            }
+        }
+    }
+}
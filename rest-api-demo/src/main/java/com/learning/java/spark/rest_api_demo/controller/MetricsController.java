@@ -0,0 +1,182 @@
+package com.learning.java.spark.rest_api_demo.controller;
+
+import com.learning.java.spark.rest_api_demo.cache.ResponseCache;
+import com.learning.java.spark.rest_api_demo.metrics.LatencyHistogram;
+import com.learning.java.spark.rest_api_demo.metrics.RequestMetrics;
+import com.learning.java.spark.rest_api_demo.metrics.RequestMetrics.RouteHistogram;
+import com.learning.java.spark.rest_api_demo.metrics.RequestProfiler;
+import com.learning.java.spark.rest_api_demo.model.ErrorResponse;
+import com.learning.java.spark.rest_api_demo.model.MetricsReport;
+import com.learning.java.spark.rest_api_demo.util.JsonUtil;
+import com.learning.java.spark.rest_api_demo.util.ResponseCompressor;
+import spark.Request;
+import spark.Route;
+
+/**
+ * Controller for the metrics endpoints
+ */
+public record MetricsController(RequestMetrics requestMetrics, ResponseCache responseCache,
+                                ResponseCompressor responseCompressor) {
+    static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    // Histogram buckets for the Prometheus format, in seconds
+    private static final double[] BUCKET_SECONDS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    /**
+     * GET /api/metrics - Request latency per route and status class, throughput, cache and compression
+     * Answers in Prometheus text format for ?format=prometheus or an Accept of text/plain
+     * or OpenMetrics, and in JSON otherwise.
+     */
+    public Route getMetrics() {
+        return (req, res) -> {
+            RequestMetrics.Snapshot snapshot = requestMetrics.snapshot();
+            if (isPrometheusRequested(req)) {
+                res.type(PROMETHEUS_CONTENT_TYPE);
+                return toPrometheus(snapshot, responseCache.stats(), responseCompressor.stats());
+            }
+            MetricsReport report = new MetricsReport(snapshot.inFlight(), snapshot.requests(),
+                    snapshot.requestsPerSecond(),
+                    snapshot.routes().stream().map(RouteHistogram::stats).toList(),
+                    responseCache.stats(), responseCompressor.stats());
+            return JsonUtil.toJson(report, JsonUtil.isPrettyRequested(req));
+        };
+    }
+
+    /**
+     * GET /api/metrics/cache - Response cache counters
+     */
+    public Route getCacheMetrics() {
+        return (req, res) -> JsonUtil.toJson(responseCache.stats(), JsonUtil.isPrettyRequested(req));
+    }
+
+    /**
+     * GET /api/metrics/compression - Response compression counters, including the overall ratio
+     */
+    public Route getCompressionMetrics() {
+        return (req, res) -> JsonUtil.toJson(responseCompressor.stats(), JsonUtil.isPrettyRequested(req));
+    }
+
+    /**
+     * GET /api/admin/profile - Heaviest routes and request shapes seen by the profiler
+     * Supports optional query parameters: ?limit=10&by=cpu (the default ranks by allocated bytes)
+     */
+    public Route getProfile() {
+        return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
+            int limit;
+            try {
+                limit = parseCount("limit", req.queryParams("limit"), 10);
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return JsonUtil.toJson(new ErrorResponse(e.getMessage()), pretty);
+            }
+            RequestProfiler.Report report = requestMetrics.profiler().report(Math.max(limit, 1),
+                    "cpu".equalsIgnoreCase(req.queryParams("by")));
+            return JsonUtil.toJson(report, pretty);
+        };
+    }
+
+    /**
+     * POST /api/admin/profile?sampleEvery=100 - Turn profiling on, or off with sampleEvery=0
+     */
+    public Route updateProfile() {
+        return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
+            try {
+                String sampleEvery = req.queryParams("sampleEvery");
+                if (sampleEvery == null) {
+                    throw new IllegalArgumentException("sampleEvery is required");
+                }
+                requestMetrics.profiler().setSampleEvery(parseCount("sampleEvery", sampleEvery, 0));
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return JsonUtil.toJson(new ErrorResponse(e.getMessage()), pretty);
+            }
+            return JsonUtil.toJson(requestMetrics.profiler().report(10, false), pretty);
+        };
+    }
+
+    private static int parseCount(String name, String value, int defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int count = Integer.parseInt(value);
+            if (count < 0) {
+                throw new IllegalArgumentException(name + " must not be negative");
+            }
+            return count;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number: " + value);
+        }
+    }
+
+    private static boolean isPrometheusRequested(Request req) {
+        if ("prometheus".equalsIgnoreCase(req.queryParams("format"))) {
+            return true;
+        }
+        String accept = req.headers("Accept");
+        return accept != null && (accept.contains("text/plain") || accept.contains("application/openmetrics-text"));
+    }
+
+    static String toPrometheus(RequestMetrics.Snapshot snapshot, ResponseCache.Stats cache,
+                               ResponseCompressor.Stats compression) {
+        StringBuilder out = new StringBuilder(4096);
+        gauge(out, "http_requests_in_flight", "Requests being served", snapshot.inFlight());
+        gauge(out, "http_requests_per_second", "Average request rate over the last minute", snapshot.requestsPerSecond());
+
+        out.append("# HELP http_request_duration_seconds Request latency by route template and status class\n");
+        out.append("# TYPE http_request_duration_seconds histogram\n");
+        for (RouteHistogram route : snapshot.routes()) {
+            String labels = "method=\"" + escape(route.method()) + "\",route=\"" + escape(route.route())
+                    + "\",status=\"" + route.status() + "\"";
+            LatencyHistogram.Snapshot histogram = route.histogram();
+            for (double bucket : BUCKET_SECONDS) {
+                out.append("http_request_duration_seconds_bucket{").append(labels).append(",le=\"").append(bucket)
+                        .append("\"} ").append(histogram.countAtMost((long) (bucket * 1_000_000))).append('\n');
+            }
+            out.append("http_request_duration_seconds_bucket{").append(labels).append(",le=\"+Inf\"} ")
+                    .append(histogram.count()).append('\n');
+            out.append("http_request_duration_seconds_sum{").append(labels).append("} ")
+                    .append(histogram.sumMicros() / 1_000_000.0).append('\n');
+            out.append("http_request_duration_seconds_count{").append(labels).append("} ")
+                    .append(histogram.count()).append('\n');
+        }
+
+        counter(out, "response_cache_hits_total", "Response cache hits", cache.hits());
+        counter(out, "response_cache_misses_total", "Response cache misses", cache.misses());
+        counter(out, "response_cache_evictions_total", "Response cache evictions", cache.evictions());
+        gauge(out, "response_cache_entries", "Cached response bodies", cache.entries());
+        gauge(out, "response_cache_bytes", "Bytes held by the response cache", cache.bytes());
+
+        counter(out, "response_compression_responses_total", "Compressed responses", compression.compressedResponses());
+        counter(out, "response_compression_input_bytes_total", "Bytes before compression", compression.uncompressedBytes());
+        counter(out, "response_compression_output_bytes_total", "Bytes after compression", compression.compressedBytes());
+        gauge(out, "response_compression_ratio", "Uncompressed over compressed bytes", compression.ratio());
+        return out.toString();
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        metric(out, name, help, "gauge", value);
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        metric(out, name, help, "counter", value);
+    }
+
+    private static void metric(StringBuilder out, String name, String help, String type, double value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append(name).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
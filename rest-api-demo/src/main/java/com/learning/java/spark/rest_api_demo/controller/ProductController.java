@@ -1,53 +1,211 @@
 package com.learning.java.spark.rest_api_demo.controller;
 
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import com.learning.java.spark.rest_api_demo.cache.CachingOutputStream;
+import com.learning.java.spark.rest_api_demo.cache.ResponseCache;
+import com.learning.java.spark.rest_api_demo.cache.ResponseCache.CachedBody;
+import com.learning.java.spark.rest_api_demo.model.ErrorResponse;
 import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.model.ProductPage;
+import com.learning.java.spark.rest_api_demo.model.ProductPatch;
+import com.learning.java.spark.rest_api_demo.model.ProductQuery;
 import com.learning.java.spark.rest_api_demo.service.ProductService;
+import com.learning.java.spark.rest_api_demo.util.ContentEncoding;
+import com.learning.java.spark.rest_api_demo.util.ETags;
 import com.learning.java.spark.rest_api_demo.util.JsonUtil;
+import com.learning.java.spark.rest_api_demo.util.ResponseCompressor;
+import spark.Request;
 import spark.Route;
 
+import javax.servlet.ServletRequestWrapper;
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Controller for Product REST endpoints
+ * Single products and listings are served from pre-encoded bytes when the cache has them,
+ * and large bodies are compressed for clients that accept it.
  */
-public record ProductController(ProductService productService) {
+public record ProductController(ProductService productService, ResponseCache responseCache,
+                                ResponseCompressor responseCompressor) {
+    static final int DEFAULT_PAGE_LIMIT = 100;
+    static final int MAX_PAGE_LIMIT = 1000;
+    static final int BULK_BATCH_SIZE = 500;
+
+    public ProductController(ProductService productService) {
+        this(productService, new ResponseCache(0, 0), new ResponseCompressor(-1));
+    }
+
+    /**
+     * Wire the cache to the service so that writes evict the products they touch
+     * Listings need no eviction: their entries carry the listing version and go stale by themselves.
+     */
+    public ProductController {
+        productService.addChangeListener((before, after) ->
+                responseCache.invalidateProduct(before != null ? before.getId() : after.getId()));
+    }
 
     /**
-     * GET /api/products - Get all products
-     * Supports optional query parameter: ?category=Electronics
+     * GET /api/products - Get a page of products
+     * Supports optional query parameters: ?category=Electronics&minPrice=50&maxPrice=200&limit=50&cursor=...
+     * Price-filtered results are ordered by price, all others by ID.
+     * Answers If-None-Match with 304 Not Modified while the listing's version is unchanged.
+     * When more products follow, a Link header with rel="next" points to the next page.
+     * The body is streamed to the client instead of being built as one String, and a copy
+     * is cached under the listing version, deflated in advance when it is large, so the next
+     * identical request skips both encoding and compression.
      */
     public Route getAllProducts() {
         return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
+
+            ProductQuery query;
+            try {
+                query = parseQuery(req);
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return JsonUtil.toJson(new ErrorResponse(e.getMessage()), pretty);
+            }
+
+            // Version first, then data, so the tag never claims newer content than was sent
+            ContentEncoding encoding = responseCompressor.negotiate(req, res);
+            long version = productService.getListVersion(query);
+            String cacheKey = ResponseCache.listKey(req.queryString(), pretty);
+            CachedBody cached = responseCache.get(cacheKey, version);
+            ProductPage page = null;
+            if (cached == null) {
+                try {
+                    page = productService.getProductsPage(query);
+                } catch (IllegalArgumentException e) {
+                    res.status(400);
+                    return JsonUtil.toJson(new ErrorResponse(e.getMessage()), pretty);
+                }
+            }
+
+            // Only a listing that was built, or cached after being built, gets a tag
+            String etag = ETags.forList(version, req.queryString(), pretty, encoding);
+            res.header("ETag", etag);
+            if (ETags.matches(req.headers("If-None-Match"), etag)) {
+                res.status(304);
+                return "";
+            }
+
+            if (cached != null) {
+                res.status(200);
+                if (cached.link() != null) {
+                    res.header("Link", cached.link());
+                }
+                return responseCompressor.send(res, encoding, cached.body(), cached.deflated());
+            }
+
+            res.status(200);
+            String link = page.hasNext() ? nextLink(req, page.nextCursor()) : null;
+            if (link != null) {
+                res.header("Link", link);
+            }
+            // Writing commits the response, so Spark skips serializing the empty return value
+            OutputStream body = responseCompressor.open(res, encoding);
+            if (!responseCache.isEnabled()) {
+                JsonUtil.writeJsonArray(page.items(), body, pretty);
+                body.close();
+                return "";
+            }
+            CachingOutputStream out = new CachingOutputStream(body, responseCache.maxEntryBytes());
+            JsonUtil.writeJsonArray(page.items(), out, pretty);
+            out.close();
+            byte[] copy = out.copy();
+            if (copy != null) {
+                responseCache.put(cacheKey, version, new CachedBody(copy, link, responseCompressor.precompress(copy)));
+            }
+            return "";
+        };
+    }
+
+    /**
+     * GET /api/products/search?q=wireless+keyboard - Full-text search over name and description
+     * Supports optional query parameter: ?limit=20
+     */
+    public Route searchProducts() {
+        return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
+
+            List<Product> results;
+            try {
+                results = productService.searchProducts(req.queryParams("q"), parseLimit(req.queryParams("limit")));
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return JsonUtil.toJson(new ErrorResponse(e.getMessage()), pretty);
+            }
+
             res.status(200);
+            OutputStream body = responseCompressor.open(res, responseCompressor.negotiate(req, res));
+            JsonUtil.writeJsonArray(results, body, pretty);
+            body.close();
+            return "";
+        };
+    }
 
+    /**
+     * GET /api/products/stats - Count, stock and value figures for the catalog and each category
+     * Supports an optional ?category=Electronics to return the figures of that category only.
+     * Figures are maintained by every write, so this costs O(categories) whatever the catalog size.
+     */
+    public Route getStats() {
+        return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
             String category = req.queryParams("category");
-            List<Product> products;
 
-            if (category != null && !category.isEmpty()) {
-                products = productService.getProductsByCategory(category);
-            } else {
-                products = productService.getAllProducts();
+            res.status(200);
+            if (category == null || category.isEmpty()) {
+                return JsonUtil.toJson(productService.getStats(), pretty);
             }
-
-            return JsonUtil.toJson(products);
+            return JsonUtil.toJson(productService.getStats(category), pretty);
         };
     }
 
     /**
      * GET /api/products/:id - Get product by ID
+     * Answers If-None-Match with 304 Not Modified when the product has not changed.
+     * The encoded body is cached per product version, so repeat reads are a byte-array write.
      */
     public Route getProductById() {
         return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
             String id = req.params(":id");
             Optional<Product> product = productService.getProductById(id);
 
             if (product.isPresent()) {
+                ContentEncoding encoding = responseCompressor.negotiate(req, res);
+                long version = product.get().getVersion();
+                String etag = ETags.forProduct(version, pretty, encoding);
+                res.header("ETag", etag);
+                if (ETags.matches(req.headers("If-None-Match"), etag)) {
+                    res.status(304);
+                    return "";
+                }
                 res.status(200);
-                return JsonUtil.toJson(product.get());
+                String cacheKey = ResponseCache.productKey(id, pretty);
+                CachedBody cached = responseCache.get(cacheKey, version);
+                if (cached == null) {
+                    byte[] body = JsonUtil.toJson(product.get(), pretty).getBytes(StandardCharsets.UTF_8);
+                    cached = new CachedBody(body, null, responseCompressor.precompress(body));
+                    responseCache.put(cacheKey, version, cached);
+                }
+                return responseCompressor.send(res, encoding, cached.body(), cached.deflated());
             } else {
                 res.status(404);
-                return JsonUtil.toJson(new ErrorResponse("Product not found with id: " + id));
+                return JsonUtil.toJson(new ErrorResponse("Product not found with id: " + id), pretty);
             }
         };
     }
@@ -58,17 +216,79 @@ public record ProductController(ProductService productService) {
      */
     public Route createProduct() {
         return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
             try {
                 Product product = JsonUtil.fromJson(req.body(), Product.class);
                 Product created = productService.createProduct(product);
 
                 res.status(201);
                 res.header("Location", "/api/products/" + created.getId());
-                return JsonUtil.toJson(created);
+                return JsonUtil.toJson(created, pretty);
             } catch (IllegalArgumentException e) {
                 res.status(400);
-                return JsonUtil.toJson(new ErrorResponse(e.getMessage()));
+                return JsonUtil.toJson(new ErrorResponse(e.getMessage()), pretty);
+            }
+        };
+    }
+
+    /**
+     * POST /api/products/_bulk - Create products from newline-delimited JSON
+     * The body is read line by line straight from the connection and applied in batches.
+     * Bad lines are reported and skipped; they never fail the rest of the request.
+     * The summary is streamed back: {"errors":[{"line":3,"error":"..."}],"created":n,"failed":m}
+     */
+    public Route bulkCreateProducts() {
+        return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(unbufferedInputStream(req), StandardCharsets.UTF_8), 64 * 1024);
+
+            res.status(200);
+            JsonWriter out = JsonUtil.newJsonWriter(res.raw().getOutputStream(), pretty);
+            out.beginObject();
+            out.name("errors").beginArray();
+
+            List<Product> batch = new ArrayList<>(BULK_BATCH_SIZE);
+            long lineNumber = 0;
+            long created = 0;
+            long failed = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    Product product = JsonUtil.fromJson(line, Product.class);
+                    if (product == null) {
+                        throw new IllegalArgumentException("Empty record");
+                    }
+                    product.validate();
+                    batch.add(product);
+                } catch (JsonParseException | IllegalArgumentException | DateTimeException e) {
+                    failed++;
+                    out.beginObject();
+                    out.name("line").value(lineNumber);
+                    out.name("error").value(e.getMessage());
+                    out.endObject();
+                }
+
+                if (batch.size() == BULK_BATCH_SIZE) {
+                    created += productService.createProducts(batch).size();
+                    batch.clear();
+                    out.flush();
+                }
             }
+            if (!batch.isEmpty()) {
+                created += productService.createProducts(batch).size();
+            }
+
+            out.endArray();
+            out.name("created").value(created);
+            out.name("failed").value(failed);
+            out.endObject();
+            out.flush();
+            return "";
         };
     }
 
@@ -78,6 +298,7 @@ public record ProductController(ProductService productService) {
      */
     public Route updateProduct() {
         return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
             String id = req.params(":id");
 
             try {
@@ -86,14 +307,46 @@ public record ProductController(ProductService productService) {
 
                 if (updated.isPresent()) {
                     res.status(200);
-                    return JsonUtil.toJson(updated.get());
+                    return JsonUtil.toJson(updated.get(), pretty);
                 } else {
                     res.status(404);
-                    return JsonUtil.toJson(new ErrorResponse("Product not found with id: " + id));
+                    return JsonUtil.toJson(new ErrorResponse("Product not found with id: " + id), pretty);
                 }
             } catch (IllegalArgumentException e) {
                 res.status(400);
-                return JsonUtil.toJson(new ErrorResponse(e.getMessage()));
+                return JsonUtil.toJson(new ErrorResponse(e.getMessage()), pretty);
+            }
+        };
+    }
+
+    /**
+     * PATCH /api/products/:id - Change only the fields present in the body
+     * Request body is a JSON merge patch such as {"price": 19.99} or {"quantity": 0}.
+     * The body bytes are parsed field by field into the patch, and the patch is applied
+     * to the stored product atomically, so concurrent patches never undo each other.
+     */
+    public Route patchProduct() {
+        return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
+            String id = req.params(":id");
+
+            try {
+                ProductPatch patch = JsonUtil.fromJson(req.bodyAsBytes(), ProductPatch.class);
+                if (patch == null) {
+                    throw new IllegalArgumentException("Request body is required");
+                }
+                Optional<Product> patched = productService.patchProduct(id, patch);
+
+                if (patched.isPresent()) {
+                    res.status(200);
+                    return JsonUtil.toJson(patched.get(), pretty);
+                } else {
+                    res.status(404);
+                    return JsonUtil.toJson(new ErrorResponse("Product not found with id: " + id), pretty);
+                }
+            } catch (IllegalArgumentException | JsonParseException e) {
+                res.status(400);
+                return JsonUtil.toJson(new ErrorResponse(e.getMessage()), pretty);
             }
         };
     }
@@ -103,6 +356,7 @@ public record ProductController(ProductService productService) {
      */
     public Route deleteProduct() {
         return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
             String id = req.params(":id");
             boolean deleted = productService.deleteProduct(id);
 
@@ -111,11 +365,69 @@ public record ProductController(ProductService productService) {
                 return "";
             } else {
                 res.status(404);
-                return JsonUtil.toJson(new ErrorResponse("Product not found with id: " + id));
+                return JsonUtil.toJson(new ErrorResponse("Product not found with id: " + id), pretty);
             }
         };
     }
 
-    private record ErrorResponse(String error) {
+    /**
+     * Request body stream without Spark's wrapper, which would read a non-chunked body into memory first
+     */
+    private static InputStream unbufferedInputStream(Request req) throws IOException {
+        HttpServletRequest raw = req.raw();
+        if (raw instanceof ServletRequestWrapper wrapper) {
+            return wrapper.getRequest().getInputStream();
+        }
+        return raw.getInputStream();
+    }
+
+    private static ProductQuery parseQuery(Request req) {
+        return new ProductQuery(
+                req.queryParams("category"),
+                parsePrice("minPrice", req.queryParams("minPrice")),
+                parsePrice("maxPrice", req.queryParams("maxPrice")),
+                req.queryParams("cursor"),
+                parseLimit(req.queryParams("limit")));
+    }
+
+    private static Double parsePrice(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            double price = Double.parseDouble(value);
+            if (Double.isNaN(price)) {
+                throw new NumberFormatException();
+            }
+            return price;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number: " + value);
+        }
+    }
+
+    private static int parseLimit(String limit) {
+        if (limit == null || limit.isEmpty()) {
+            return DEFAULT_PAGE_LIMIT;
+        }
+        try {
+            int value = Integer.parseInt(limit);
+            if (value < 1 || value > MAX_PAGE_LIMIT) {
+                throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_LIMIT);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Limit must be a number: " + limit);
+        }
+    }
+
+    private static String nextLink(Request req, String nextCursor) {
+        StringBuilder link = new StringBuilder("</api/products?");
+        for (String name : new String[]{"category", "minPrice", "maxPrice", "limit"}) {
+            String value = req.queryParams(name);
+            if (value != null && !value.isEmpty()) {
+                link.append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8)).append('&');
+            }
+        }
+        return link.append("cursor=").append(nextCursor).append(">; rel=\"next\"").toString();
     }
 }
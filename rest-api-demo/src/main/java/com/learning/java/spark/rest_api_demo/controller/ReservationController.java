@@ -0,0 +1,112 @@
+package com.learning.java.spark.rest_api_demo.controller;
+
+import com.google.gson.JsonParseException;
+import com.learning.java.spark.rest_api_demo.model.ErrorResponse;
+import com.learning.java.spark.rest_api_demo.model.Reservation;
+import com.learning.java.spark.rest_api_demo.model.ReservationRequest;
+import com.learning.java.spark.rest_api_demo.service.InsufficientStockException;
+import com.learning.java.spark.rest_api_demo.service.ReservationService;
+import com.learning.java.spark.rest_api_demo.util.JsonUtil;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Controller for stock reservations on a product
+ */
+public record ReservationController(ReservationService reservationService) {
+
+    /**
+     * POST /api/products/:id/reserve - Take units out of stock for a while
+     * Request body: {"quantity": 2, "ttlSeconds": 600}; ttlSeconds is optional and defaults to 15 minutes.
+     * Answers 201 with the reservation, or 409 when there is not enough stock.
+     */
+    public Route reserve() {
+        return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
+            String id = req.params(":id");
+            try {
+                ReservationRequest request = parseRequest(req);
+                Duration ttl = request.ttlSeconds() == 0 ? null : Duration.ofSeconds(request.ttlSeconds());
+                Optional<Reservation> reservation = reservationService.reserve(id, request.quantity(), ttl);
+                if (reservation.isEmpty()) {
+                    res.status(404);
+                    return JsonUtil.toJson(new ErrorResponse("Product not found with id: " + id), pretty);
+                }
+                res.status(201);
+                return JsonUtil.toJson(reservation.get(), pretty);
+            } catch (InsufficientStockException e) {
+                res.status(409);
+                return JsonUtil.toJson(new ErrorResponse(e.getMessage()), pretty);
+            } catch (IllegalArgumentException | JsonParseException e) {
+                res.status(400);
+                return JsonUtil.toJson(new ErrorResponse(e.getMessage()), pretty);
+            }
+        };
+    }
+
+    /**
+     * POST /api/products/:id/release - Put a held reservation's units back in stock
+     * Request body: {"reservationId": "42"}
+     * Answers 409 with the final status when the reservation has already ended.
+     */
+    public Route release() {
+        return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
+            try {
+                String reservationId = parseRequest(req).reservationId();
+                return respond(res, req.params(":id"), reservationId,
+                        reservationService.release(req.params(":id"), reservationId), pretty);
+            } catch (IllegalArgumentException | JsonParseException e) {
+                res.status(400);
+                return JsonUtil.toJson(new ErrorResponse(e.getMessage()), pretty);
+            }
+        };
+    }
+
+    /**
+     * POST /api/products/:id/confirm - Make a held reservation's sale final
+     * Request body: {"reservationId": "42"}
+     * Answers 409 with the final status when the reservation has already ended, expired included.
+     */
+    public Route confirm() {
+        return (req, res) -> {
+            boolean pretty = JsonUtil.isPrettyRequested(req);
+            try {
+                String reservationId = parseRequest(req).reservationId();
+                return respond(res, req.params(":id"), reservationId,
+                        reservationService.confirm(req.params(":id"), reservationId), pretty);
+            } catch (IllegalArgumentException | JsonParseException e) {
+                res.status(400);
+                return JsonUtil.toJson(new ErrorResponse(e.getMessage()), pretty);
+            }
+        };
+    }
+
+    private String respond(Response res, String id, String reservationId, Optional<Reservation> reservation, boolean pretty) {
+        if (reservation.isEmpty()) {
+            Optional<Reservation> ended = reservationService.find(reservationId)
+                    .filter(found -> found.productId().equals(id) && found.status() != Reservation.Status.HELD);
+            if (ended.isPresent()) {
+                res.status(409);
+                return JsonUtil.toJson(new ErrorResponse(
+                        "Reservation " + reservationId + " is already " + ended.get().status()), pretty);
+            }
+            res.status(404);
+            return JsonUtil.toJson(new ErrorResponse("No held reservation for product " + id + " with that id"), pretty);
+        }
+        res.status(200);
+        return JsonUtil.toJson(reservation.get(), pretty);
+    }
+
+    private static ReservationRequest parseRequest(Request req) {
+        ReservationRequest request = JsonUtil.fromJson(req.body(), ReservationRequest.class);
+        if (request == null) {
+            throw new IllegalArgumentException("Request body is required");
+        }
+        return request;
+    }
+}
@@ -0,0 +1,75 @@
+package com.learning.java.spark.rest_api_demo.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Events per second over a sliding window of one-second slots
+ * Each slot packs the second it holds (counted from when the counter was made) into its high
+ * 32 bits and that second's count into the low 32, and changes with a single CAS: the first
+ * event of a new second swaps in a count of one, so no increment is lost to a reset, no
+ * background thread is needed and nothing is allocated.
+ */
+public class RateCounter {
+    private final int windowSeconds;
+    private final long startNanos;
+    private final AtomicLongArray slots;
+
+    public RateCounter(int windowSeconds) {
+        this(windowSeconds, System.nanoTime());
+    }
+
+    RateCounter(int windowSeconds, long startNanos) {
+        this.windowSeconds = windowSeconds;
+        this.startNanos = startNanos;
+        this.slots = new AtomicLongArray(windowSeconds);
+    }
+
+    public void increment(long nanoTime) {
+        long second = second(nanoTime);
+        if (second < 0) {
+            return;
+        }
+        int slot = (int) (second % windowSeconds);
+        while (true) {
+            long packed = slots.get(slot);
+            long held = packed >>> 32;
+            long next;
+            if (held == second) {
+                next = packed + 1;
+            } else if (held < second) {
+                next = second << 32 | 1;
+            } else {
+                // Timed a whole window late; the slot already counts a newer second
+                return;
+            }
+            if (slots.compareAndSet(slot, packed, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Average rate over the completed seconds of the window, or of the counter's life while
+     * that is shorter than the window
+     */
+    public double perSecond(long nanoTime) {
+        long current = second(nanoTime);
+        long elapsed = Math.min(current, windowSeconds);
+        if (elapsed <= 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int slot = 0; slot < windowSeconds; slot++) {
+            long packed = slots.get(slot);
+            long second = packed >>> 32;
+            if (second < current && second >= current - windowSeconds) {
+                total += packed & 0xFFFF_FFFFL;
+            }
+        }
+        return (double) total / elapsed;
+    }
+
+    private long second(long nanoTime) {
+        return Math.floorDiv(nanoTime - startNanos, 1_000_000_000L);
+    }
+}
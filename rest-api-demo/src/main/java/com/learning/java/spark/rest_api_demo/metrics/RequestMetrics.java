@@ -0,0 +1,231 @@
+package com.learning.java.spark.rest_api_demo.metrics;
+
+import spark.Filter;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-route request latency and throughput
+ * <p>
+ * A before filter stamps the start time, the route wrapper from {@link #timed(Route)} names
+ * the route template (/api/products/:id rather than the raw path), and an afterAfter filter
+ * records the elapsed time under that template and the response's status class.
+ * <p>
+ * A request runs start to finish on one thread, so on the pooled platform threads that state
+ * lives in a reused per-thread slot and recording a request allocates nothing. With
+ * server.threads=virtual every request has a fresh thread, where a per-thread slot would be
+ * allocated each time, so it goes in request attributes instead, at the cost of a boxed
+ * start time and two attribute entries per request.
+ */
+public class RequestMetrics {
+    static final String UNMATCHED = "unmatched";
+    private static final String START_ATTRIBUTE = RequestMetrics.class.getName() + ".start";
+    private static final String ROUTE_ATTRIBUTE = RequestMetrics.class.getName() + ".route";
+    private static final String SAMPLE_ATTRIBUTE = RequestMetrics.class.getName() + ".sample";
+
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final RouteMetrics unmatched = new RouteMetrics("", UNMATCHED);
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final RateCounter rate = new RateCounter(60);
+    private final RequestProfiler profiler;
+    private final boolean virtualThreads;
+    private final ThreadLocal<RequestState> threadState = ThreadLocal.withInitial(RequestState::new);
+
+    public RequestMetrics() {
+        this(new RequestProfiler(0, 60), false);
+    }
+
+    /**
+     * @param virtualThreads whether requests are served on virtual threads
+     */
+    public RequestMetrics(RequestProfiler profiler, boolean virtualThreads) {
+        this.profiler = profiler;
+        this.virtualThreads = virtualThreads;
+    }
+
+    public RequestProfiler profiler() {
+        return profiler;
+    }
+
+    /**
+     * The request in progress on a platform thread; active from the before filter to the afterAfter filter
+     */
+    private static final class RequestState {
+        boolean active;
+        long start;
+        RouteMetrics route;
+        RequestProfiler.Sample sample;
+    }
+
+    /**
+     * Latency histograms for one method and route template, one per status class
+     */
+    static final class RouteMetrics {
+        final String method;
+        final String template;
+        final LatencyHistogram[] byStatusClass = new LatencyHistogram[6];
+
+        RouteMetrics(String method, String template) {
+            this.method = method;
+            this.template = template;
+            for (int i = 0; i < byStatusClass.length; i++) {
+                byStatusClass[i] = new LatencyHistogram();
+            }
+        }
+
+        void record(int status, long nanos) {
+            int statusClass = status / 100;
+            byStatusClass[statusClass >= 1 && statusClass <= 5 ? statusClass : 0].record(nanos);
+        }
+    }
+
+    /**
+     * Latency of one route and status class; times are in milliseconds
+     */
+    public record RouteStats(String method, String route, String status, long count, double meanMillis,
+                             double p50Millis, double p90Millis, double p99Millis, double maxMillis) {
+    }
+
+    /**
+     * Histogram of one route and status class
+     */
+    public record RouteHistogram(String method, String route, String status, LatencyHistogram.Snapshot histogram) {
+
+        public RouteStats stats() {
+            return new RouteStats(method, route, status, histogram.count(),
+                    millis(histogram.sumMicros()) / histogram.count(),
+                    millis(histogram.percentile(0.5)), millis(histogram.percentile(0.9)),
+                    millis(histogram.percentile(0.99)), millis(histogram.maxMicros()));
+        }
+    }
+
+    /**
+     * Request counters and every non-empty route histogram
+     */
+    public record Snapshot(long inFlight, long requests, double requestsPerSecond, List<RouteHistogram> routes) {
+    }
+
+    /**
+     * Before filter; register it ahead of the others so the time spent in them counts
+     */
+    public Filter begin() {
+        return (req, res) -> {
+            inFlight.increment();
+            RequestProfiler.Sample sample = profiler.isEnabled() ? profiler.begin() : null;
+            if (virtualThreads) {
+                if (sample != null) {
+                    req.attribute(SAMPLE_ATTRIBUTE, sample);
+                }
+                req.attribute(START_ATTRIBUTE, System.nanoTime());
+                return;
+            }
+            RequestState state = threadState.get();
+            state.active = true;
+            state.route = null;
+            state.sample = sample;
+            state.start = System.nanoTime();
+        };
+    }
+
+    /**
+     * AfterAfter filter: runs even when the route threw, once the final status is known
+     */
+    public Filter end() {
+        return (req, res) -> {
+            long now = System.nanoTime();
+            if (virtualThreads) {
+                Long start = req.attribute(START_ATTRIBUTE);
+                // Null when the before filter never ran for this request
+                if (start != null) {
+                    record(req, res, now, start, req.attribute(ROUTE_ATTRIBUTE), req.attribute(SAMPLE_ATTRIBUTE));
+                }
+                return;
+            }
+            RequestState state = threadState.get();
+            if (state.active) {
+                state.active = false;
+                record(req, res, now, state.start, state.route, state.sample);
+                state.route = null;
+                state.sample = null;
+            }
+        };
+    }
+
+    private void record(Request req, Response res, long now, long start, RouteMetrics route,
+                        RequestProfiler.Sample sample) {
+        if (route == null) {
+            route = unmatched;
+        }
+        route.record(res.raw().getStatus(), now - start);
+        if (sample != null) {
+            profiler.end(sample, req, route.method, route.template);
+        }
+        inFlight.decrement();
+        requests.increment();
+        rate.increment(now);
+    }
+
+    /**
+     * Wrap a route so its requests are recorded under its template
+     */
+    public Route timed(Route route) {
+        return new TimedRoute(route);
+    }
+
+    private final class TimedRoute implements Route {
+        private final Route delegate;
+        private volatile RouteMetrics metrics;
+
+        TimedRoute(Route delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Object handle(Request req, Response res) throws Exception {
+            RouteMetrics route = metrics;
+            if (route == null) {
+                // A route object serves one method and path, so the first request names it for good
+                route = routes.computeIfAbsent(req.requestMethod() + " " + req.matchedPath(),
+                        key -> new RouteMetrics(req.requestMethod(), req.matchedPath()));
+                metrics = route;
+            }
+            if (virtualThreads) {
+                req.attribute(ROUTE_ATTRIBUTE, route);
+            } else {
+                threadState.get().route = route;
+            }
+            return delegate.handle(req, res);
+        }
+    }
+
+    public Snapshot snapshot() {
+        List<RouteMetrics> all = new ArrayList<>(routes.values());
+        all.sort(Comparator.comparing((RouteMetrics r) -> r.template).thenComparing(r -> r.method));
+        all.add(unmatched);
+
+        List<RouteHistogram> histograms = new ArrayList<>();
+        for (RouteMetrics route : all) {
+            for (int statusClass = 0; statusClass < route.byStatusClass.length; statusClass++) {
+                LatencyHistogram.Snapshot histogram = route.byStatusClass[statusClass].snapshot();
+                if (histogram.count() > 0) {
+                    String status = statusClass == 0 ? "other" : statusClass + "xx";
+                    histograms.add(new RouteHistogram(route.method, route.template, status, histogram));
+                }
+            }
+        }
+        return new Snapshot(inFlight.sum(), requests.sum(), rate.perSecond(System.nanoTime()), histograms);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
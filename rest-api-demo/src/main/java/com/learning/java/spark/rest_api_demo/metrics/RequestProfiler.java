@@ -0,0 +1,257 @@
+package com.learning.java.spark.rest_api_demo.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Debug profiling of heap allocation and CPU time per route
+ * <p>
+ * When sampling is on, one request in every N has the serving thread's allocated bytes and
+ * CPU time read from ThreadMXBean before and after it, and the difference is charged to
+ * its route template and to its request shape: method, template and the names (not values)
+ * of its query parameters, such as "GET /api/products?category&amp;limit".
+ * <p>
+ * Totals are kept for the current and the previous window, so the top-N tables cover one
+ * to two windows of recent traffic. When sampling is off the only cost is one field read.
+ * <p>
+ * The JVM reports neither allocated bytes nor CPU time for virtual threads, so with
+ * server.threads=virtual every sampled request is counted as skipped and the tables stay
+ * empty; turning sampling on in that mode logs a warning.
+ */
+public class RequestProfiler {
+    private static final Logger log = LoggerFactory.getLogger(RequestProfiler.class);
+    // Keeps a client that varies query parameter names from growing the tables without bound
+    private static final int MAX_KEYS = 1000;
+    private static final String OTHER = "other";
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final long windowNanos;
+    private final boolean virtualThreads;
+    private volatile int sampleEvery;
+    private volatile Window current;
+    private volatile Window previous;
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * Allocation and CPU totals for one route or request shape
+     */
+    public record Entry(String key, long requests, long allocatedBytes, long maxAllocatedBytes,
+                        double allocatedBytesPerRequest, double cpuMillis, double cpuMillisPerRequest) {
+    }
+
+    /**
+     * Top-N tables for the recent windows
+     *
+     * @param skippedRequests requests picked for sampling that could not be measured because
+     *                        their thread reports no allocation, such as a virtual thread
+     */
+    public record Report(int sampleEvery, long windowSeconds, long sampledRequests, long skippedRequests,
+                         List<Entry> routes, List<Entry> shapes) {
+    }
+
+    private static final class Totals {
+        final LongAdder requests = new LongAdder();
+        final LongAdder allocatedBytes = new LongAdder();
+        final LongAdder cpuNanos = new LongAdder();
+        final AtomicLong maxAllocatedBytes = new AtomicLong();
+
+        void add(long allocated, long cpu) {
+            requests.increment();
+            allocatedBytes.add(allocated);
+            cpuNanos.add(cpu);
+            maxAllocatedBytes.accumulateAndGet(allocated, Math::max);
+        }
+    }
+
+    private static final class Window {
+        final long start;
+        final Map<String, Totals> routes = new ConcurrentHashMap<>();
+        final Map<String, Totals> shapes = new ConcurrentHashMap<>();
+
+        Window(long start) {
+            this.start = start;
+        }
+    }
+
+    public RequestProfiler(int sampleEvery, long windowSeconds) {
+        this(sampleEvery, windowSeconds, false);
+    }
+
+    /**
+     * @param sampleEvery    profile one request in this many; 0 turns profiling off
+     * @param windowSeconds  length of one rolling window
+     * @param virtualThreads whether requests are served on virtual threads, which cannot be profiled
+     */
+    public RequestProfiler(int sampleEvery, long windowSeconds, boolean virtualThreads) {
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.windowNanos = windowSeconds * 1_000_000_000L;
+        this.virtualThreads = virtualThreads;
+        this.current = new Window(System.nanoTime());
+        this.previous = new Window(current.start);
+        setSampleEvery(sampleEvery);
+    }
+
+    /**
+     * Build the profiler described by system properties
+     * <ul>
+     *     <li>profiling.sampleEvery - profile one request in this many (default 0, off)</li>
+     *     <li>profiling.windowSeconds - length of one rolling window (default 60)</li>
+     * </ul>
+     *
+     * @param virtualThreads whether requests are served on virtual threads
+     */
+    public static RequestProfiler fromSystemProperties(boolean virtualThreads) {
+        return new RequestProfiler(
+                Integer.getInteger("profiling.sampleEvery", 0),
+                Long.getLong("profiling.windowSeconds", 60),
+                virtualThreads);
+    }
+
+    public boolean isEnabled() {
+        return sampleEvery > 0;
+    }
+
+    /**
+     * Change the sampling rate at runtime; 0 turns profiling off
+     */
+    public void setSampleEvery(int sampleEvery) {
+        if (sampleEvery < 0) {
+            throw new IllegalArgumentException("sampleEvery must not be negative");
+        }
+        if (sampleEvery > 0) {
+            if (threads.isThreadAllocatedMemorySupported() && !threads.isThreadAllocatedMemoryEnabled()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+            }
+            if (threads.isThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) {
+                threads.setThreadCpuTimeEnabled(true);
+            }
+            log.info("Profiling one request in {}", sampleEvery);
+            if (virtualThreads) {
+                log.warn("Requests are served on virtual threads, which report no allocation or CPU time;"
+                        + " sampled requests will be counted as skipped and the profile will stay empty");
+            }
+        }
+        this.sampleEvery = sampleEvery;
+    }
+
+    /**
+     * Starting readings of a request picked for profiling
+     */
+    record Sample(long allocatedBytes, long cpuNanos) {
+    }
+
+    /**
+     * Decide whether to profile the request starting on this thread
+     *
+     * @return the starting readings, or null when the request is not sampled or cannot be
+     */
+    Sample begin() {
+        int every = sampleEvery;
+        if (every <= 0 || (every > 1 && ThreadLocalRandom.current().nextInt(every) != 0)) {
+            return null;
+        }
+        long allocatedBytes = threads.getCurrentThreadAllocatedBytes();
+        if (allocatedBytes < 0) {
+            skipped.increment();
+            return null;
+        }
+        return new Sample(allocatedBytes, threads.getCurrentThreadCpuTime());
+    }
+
+    /**
+     * Charge a sampled request's allocation and CPU time to its route and shape
+     */
+    void end(Sample sample, Request req, String method, String template) {
+        long allocatedBytes = threads.getCurrentThreadAllocatedBytes();
+        long cpuNanos = threads.getCurrentThreadCpuTime();
+        if (allocatedBytes < 0) {
+            skipped.increment();
+            return;
+        }
+        long allocated = allocatedBytes - sample.allocatedBytes();
+        long cpu = cpuNanos < 0 || sample.cpuNanos() < 0 ? 0 : cpuNanos - sample.cpuNanos();
+
+        Window window = window(System.nanoTime());
+        String route = method.isEmpty() ? template : method + " " + template;
+        totals(window.routes, route).add(allocated, cpu);
+        totals(window.shapes, shape(req, route)).add(allocated, cpu);
+        sampled.increment();
+    }
+
+    /**
+     * The heaviest routes and request shapes of the recent windows, by allocated bytes or CPU time
+     */
+    public Report report(int limit, boolean byCpu) {
+        Window recent = window(System.nanoTime());
+        Window older = previous;
+        return new Report(sampleEvery, windowNanos / 1_000_000_000L, sampled.sum(), skipped.sum(),
+                top(older.routes, recent.routes, limit, byCpu),
+                top(older.shapes, recent.shapes, limit, byCpu));
+    }
+
+    private Window window(long now) {
+        Window window = current;
+        if (now - window.start < windowNanos) {
+            return window;
+        }
+        synchronized (this) {
+            window = current;
+            if (now - window.start >= windowNanos) {
+                previous = now - window.start < 2 * windowNanos ? window : new Window(now);
+                current = window = new Window(now);
+            }
+            return window;
+        }
+    }
+
+    private static Totals totals(Map<String, Totals> table, String key) {
+        Totals totals = table.get(key);
+        if (totals != null) {
+            return totals;
+        }
+        return table.computeIfAbsent(table.size() < MAX_KEYS ? key : OTHER, k -> new Totals());
+    }
+
+    private static String shape(Request req, String route) {
+        TreeSet<String> names = new TreeSet<>(req.queryParams());
+        if (names.isEmpty()) {
+            return route;
+        }
+        return route + "?" + String.join("&", names);
+    }
+
+    private static List<Entry> top(Map<String, Totals> older, Map<String, Totals> recent, int limit, boolean byCpu) {
+        Map<String, long[]> merged = new HashMap<>();
+        for (Map<String, Totals> table : List.of(older, recent)) {
+            table.forEach((key, totals) -> {
+                long[] sums = merged.computeIfAbsent(key, k -> new long[4]);
+                sums[0] += totals.requests.sum();
+                sums[1] += totals.allocatedBytes.sum();
+                sums[2] += totals.cpuNanos.sum();
+                sums[3] = Math.max(sums[3], totals.maxAllocatedBytes.get());
+            });
+        }
+        List<Entry> entries = new ArrayList<>(merged.size());
+        merged.forEach((key, sums) -> entries.add(new Entry(key, sums[0], sums[1], sums[3],
+                sums[0] == 0 ? 0 : (double) sums[1] / sums[0],
+                sums[2] / 1_000_000.0, sums[0] == 0 ? 0 : sums[2] / 1_000_000.0 / sums[0])));
+        entries.sort(byCpu
+                ? Comparator.comparingDouble(Entry::cpuMillis).reversed()
+                : Comparator.comparingLong(Entry::allocatedBytes).reversed());
+        return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+    }
+}
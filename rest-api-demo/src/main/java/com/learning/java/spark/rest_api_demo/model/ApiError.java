@@ -0,0 +1,7 @@
+package com.learning.java.spark.rest_api_demo.model;
+
+/**
+ * Error body returned by the global exception and not-found handlers
+ */
+public record ApiError(int status, String message) {
+}
@@ -0,0 +1,12 @@
+package com.learning.java.spark.rest_api_demo.model;
+
+import java.util.List;
+
+/**
+ * JSON body of GET /api/products/stats
+ *
+ * @param total      figures for the whole catalog, products without a category included
+ * @param categories figures per non-empty category, ordered by name
+ */
+public record CatalogStats(ProductStats total, List<ProductStats> categories) {
+}
@@ -0,0 +1,7 @@
+package com.learning.java.spark.rest_api_demo.model;
+
+/**
+ * Error body returned by product endpoints
+ */
+public record ErrorResponse(String error) {
+}
@@ -0,0 +1,7 @@
+package com.learning.java.spark.rest_api_demo.model;
+
+/**
+ * Body returned by the health check endpoint
+ */
+public record HealthResponse(String status, String message) {
+}
@@ -0,0 +1,14 @@
+package com.learning.java.spark.rest_api_demo.model;
+
+import com.learning.java.spark.rest_api_demo.cache.ResponseCache;
+import com.learning.java.spark.rest_api_demo.metrics.RequestMetrics.RouteStats;
+import com.learning.java.spark.rest_api_demo.util.ResponseCompressor;
+
+import java.util.List;
+
+/**
+ * JSON body of GET /api/metrics
+ */
+public record MetricsReport(long inFlight, long requests, double requestsPerSecond, List<RouteStats> routes,
+                            ResponseCache.Stats cache, ResponseCompressor.Stats compression) {
+}
@@ -15,21 +15,29 @@ public class Product {
     private String category;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    // Changes on every write; used for ETags and not part of the JSON representation
+    private long version;
 
     public Product() {
         this.createdAt = LocalDateTime.now();
-        this.updatedAt = LocalDateTime.now();
+        this.updatedAt = createdAt;
     }
 
     public Product(String id, String name, String description, double price, int quantity, String category) {
+        this(id, name, description, price, quantity, category, LocalDateTime.now(), null);
+        this.updatedAt = createdAt;
+    }
+
+    public Product(String id, String name, String description, double price, int quantity, String category,
+                   LocalDateTime createdAt, LocalDateTime updatedAt) {
         this.id = id;
         this.name = name;
         this.description = description;
         this.price = price;
         this.quantity = quantity;
         this.category = category;
-        this.createdAt = LocalDateTime.now();
-        this.updatedAt = LocalDateTime.now();
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
     }
 
     // Getters and Setters
@@ -97,6 +105,24 @@ public class Product {
         this.updatedAt = updatedAt;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Field-by-field copy, including ID, timestamps and version
+     * Stored products are replaced rather than modified, so readers never see a half-applied write.
+     */
+    public Product copy() {
+        Product copy = new Product(id, name, description, price, quantity, category, createdAt, updatedAt);
+        copy.version = version;
+        return copy;
+    }
+
     /**
      * Validate product data
      */
@@ -0,0 +1,36 @@
+package com.learning.java.spark.rest_api_demo.model;
+
+import java.util.Locale;
+
+/**
+ * One product write as published on the change feed
+ *
+ * @param version version written, or for a delete the version removed; orders changes to one product
+ * @param product product after the change, or null for a delete
+ */
+public record ProductChange(Type type, String id, long version, Product product) {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED;
+
+        /**
+         * Event name used on the wire
+         */
+        public String eventName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Describe a write from the states on either side of it; either side is null for creates and deletes
+     */
+    public static ProductChange of(Product before, Product after) {
+        if (before == null) {
+            return new ProductChange(Type.CREATED, after.getId(), after.getVersion(), after);
+        }
+        if (after == null) {
+            return new ProductChange(Type.DELETED, before.getId(), before.getVersion(), null);
+        }
+        return new ProductChange(Type.UPDATED, after.getId(), after.getVersion(), after);
+    }
+}
@@ -0,0 +1,16 @@
+package com.learning.java.spark.rest_api_demo.model;
+
+import java.util.List;
+
+/**
+ * One page of a product listing
+ *
+ * @param items      products on this page, in ascending ID order
+ * @param nextCursor opaque cursor for the following page, or null on the last page
+ */
+public record ProductPage(List<Product> items, String nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
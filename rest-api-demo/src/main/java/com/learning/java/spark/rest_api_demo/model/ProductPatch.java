@@ -0,0 +1,101 @@
+package com.learning.java.spark.rest_api_demo.model;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Partial update of a product: only the fields present in the request body
+ * Follows JSON merge patch semantics, so an explicit null clears description or category;
+ * name, price and quantity cannot be cleared and fail validation instead.
+ */
+public class ProductPatch {
+
+    public enum Field {
+        NAME,
+        DESCRIPTION,
+        PRICE,
+        QUANTITY,
+        CATEGORY
+    }
+
+    private final Set<Field> fields = EnumSet.noneOf(Field.class);
+    private String name;
+    private String description;
+    private double price;
+    private int quantity;
+    private String category;
+
+    public void setName(String name) {
+        this.name = name;
+        fields.add(Field.NAME);
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+        fields.add(Field.DESCRIPTION);
+    }
+
+    public void setPrice(double price) {
+        this.price = price;
+        fields.add(Field.PRICE);
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+        fields.add(Field.QUANTITY);
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+        fields.add(Field.CATEGORY);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public boolean has(Field field) {
+        return fields.contains(field);
+    }
+
+    public boolean isEmpty() {
+        return fields.isEmpty();
+    }
+
+    /**
+     * Copy the present fields onto a product, leaving the others as they are
+     */
+    public void applyTo(Product product) {
+        if (has(Field.NAME)) {
+            product.setName(name);
+        }
+        if (has(Field.DESCRIPTION)) {
+            product.setDescription(description);
+        }
+        if (has(Field.PRICE)) {
+            product.setPrice(price);
+        }
+        if (has(Field.QUANTITY)) {
+            product.setQuantity(quantity);
+        }
+        if (has(Field.CATEGORY)) {
+            product.setCategory(category);
+        }
+    }
+}
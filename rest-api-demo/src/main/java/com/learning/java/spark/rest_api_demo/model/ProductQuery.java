@@ -0,0 +1,24 @@
+package com.learning.java.spark.rest_api_demo.model;
+
+/**
+ * Filters and paging for a product listing
+ *
+ * @param category optional category, matched case-insensitively
+ * @param minPrice optional inclusive lower price bound
+ * @param maxPrice optional inclusive upper price bound
+ * @param cursor   opaque cursor from the previous page, or null for the first page
+ * @param limit    maximum number of products on the page
+ */
+public record ProductQuery(String category, Double minPrice, Double maxPrice, String cursor, int limit) {
+
+    public boolean hasCategory() {
+        return category != null && !category.isEmpty();
+    }
+
+    /**
+     * Price-filtered listings are ordered by price instead of ID
+     */
+    public boolean hasPriceRange() {
+        return minPrice != null || maxPrice != null;
+    }
+}
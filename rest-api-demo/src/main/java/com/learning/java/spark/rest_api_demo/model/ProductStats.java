@@ -0,0 +1,14 @@
+package com.learning.java.spark.rest_api_demo.model;
+
+/**
+ * Aggregates over a set of products
+ *
+ * @param category      category the figures cover, or null for the whole catalog
+ * @param totalQuantity sum of quantity in stock
+ * @param totalValue    sum of price × quantity
+ * @param minPrice      lowest price, or null when there are no products
+ * @param maxPrice      highest price, or null when there are no products
+ */
+public record ProductStats(String category, long count, long totalQuantity, double totalValue,
+                           Double minPrice, Double maxPrice) {
+}
@@ -0,0 +1,28 @@
+package com.learning.java.spark.rest_api_demo.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Units of a product set aside for a buyer
+ * Reserved units are taken out of the product's quantity straight away; releasing or expiring
+ * the reservation puts them back, confirming it makes the sale final.
+ *
+ * @param id        reservation ID, used to release or confirm it
+ * @param productId product the units were taken from
+ * @param quantity  number of units held
+ * @param status    where the reservation is in its lifecycle
+ * @param expiresAt when a held reservation is released automatically
+ */
+public record Reservation(String id, String productId, int quantity, Status status, LocalDateTime expiresAt) {
+
+    public enum Status {
+        HELD,
+        CONFIRMED,
+        RELEASED,
+        EXPIRED
+    }
+
+    public Reservation withStatus(Status status) {
+        return new Reservation(id, productId, quantity, status, expiresAt);
+    }
+}
@@ -0,0 +1,8 @@
+package com.learning.java.spark.rest_api_demo.model;
+
+/**
+ * Body of the reservation endpoints
+ * Reserving takes a quantity and an optional time to live; releasing and confirming take the reservation ID.
+ */
+public record ReservationRequest(int quantity, long ttlSeconds, String reservationId) {
+}
@@ -0,0 +1,106 @@
+package com.learning.java.spark.rest_api_demo.service;
+
+import com.learning.java.spark.rest_api_demo.model.CatalogStats;
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.model.ProductStats;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running count, stock and value totals for the catalog and for each category
+ * Totals are striped counters, so writers to different products do not contend on one field.
+ * Value is summed in millionths, so removing a product exactly cancels adding it. Prices are
+ * kept as a sorted multiset per bucket, which keeps min and max right after deletes.
+ * ProductService serializes updates per product ID; categories match case-insensitively.
+ */
+class CatalogAggregates {
+    private static final double VALUE_SCALE = 1_000_000;
+
+    private final Bucket total = new Bucket(null);
+    private final Map<String, Bucket> byCategory = new ConcurrentHashMap<>();
+
+    void add(Product product) {
+        total.add(product);
+        if (product.getCategory() != null) {
+            byCategory.computeIfAbsent(CategoryIndex.key(product.getCategory()), k -> new Bucket(product.getCategory()))
+                    .add(product);
+        }
+    }
+
+    void remove(Product product) {
+        total.remove(product);
+        if (product.getCategory() != null) {
+            Bucket bucket = byCategory.get(CategoryIndex.key(product.getCategory()));
+            if (bucket != null) {
+                bucket.remove(product);
+            }
+        }
+    }
+
+    /**
+     * Figures for the whole catalog and every non-empty category, in O(categories)
+     */
+    CatalogStats stats() {
+        List<ProductStats> categories = byCategory.values().stream()
+                .map(Bucket::stats)
+                .filter(stats -> stats.count() > 0)
+                .sorted(Comparator.comparing(ProductStats::category, String.CASE_INSENSITIVE_ORDER))
+                .toList();
+        return new CatalogStats(total.stats(), categories);
+    }
+
+    /**
+     * Figures for one category; an unknown category has a count of zero
+     */
+    ProductStats stats(String category) {
+        Bucket bucket = byCategory.get(CategoryIndex.key(category));
+        return bucket == null ? new ProductStats(category, 0, 0, 0, null, null) : bucket.stats();
+    }
+
+    /**
+     * Totals for one category, or the whole catalog when the name is null
+     * Buckets are kept once created, so a concurrent writer never updates a dropped one.
+     */
+    private static final class Bucket {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder quantity = new LongAdder();
+        private final LongAdder valueMillionths = new LongAdder();
+        // Products per price; the functions are pure, so the map may retry them safely
+        private final ConcurrentSkipListMap<Double, Integer> prices = new ConcurrentSkipListMap<>();
+
+        Bucket(String name) {
+            this.name = name;
+        }
+
+        void add(Product product) {
+            count.increment();
+            quantity.add(product.getQuantity());
+            valueMillionths.add(valueMillionths(product));
+            prices.merge(product.getPrice(), 1, Integer::sum);
+        }
+
+        void remove(Product product) {
+            count.decrement();
+            quantity.add(-product.getQuantity());
+            valueMillionths.add(-valueMillionths(product));
+            prices.computeIfPresent(product.getPrice(), (price, n) -> n == 1 ? null : n - 1);
+        }
+
+        ProductStats stats() {
+            Map.Entry<Double, Integer> min = prices.firstEntry();
+            Map.Entry<Double, Integer> max = prices.lastEntry();
+            return new ProductStats(name, count.sum(), quantity.sum(), valueMillionths.sum() / VALUE_SCALE,
+                    min == null ? null : min.getKey(), max == null ? null : max.getKey());
+        }
+
+        private static long valueMillionths(Product product) {
+            return Math.round(product.getPrice() * product.getQuantity() * VALUE_SCALE);
+        }
+    }
+}
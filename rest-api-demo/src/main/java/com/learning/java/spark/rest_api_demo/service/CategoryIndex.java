@@ -0,0 +1,91 @@
+package com.learning.java.spark.rest_api_demo.service;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Case-insensitive secondary index from category to product IDs.
+ * ProductService serializes updates per product ID, this class serializes
+ * updates per category bucket so empty buckets can be dropped safely.
+ * IDs are kept in ascending order so category results can be paged.
+ */
+class CategoryIndex {
+    private final Map<String, NavigableSet<Long>> idsByCategory = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Add a product under its category
+     */
+    void add(Product product) {
+        if (product.getCategory() == null) {
+            return;
+        }
+        long id = Long.parseLong(product.getId());
+        idsByCategory.compute(key(product.getCategory()), (k, ids) -> {
+            if (ids == null) {
+                ids = new ConcurrentSkipListSet<>();
+            }
+            ids.add(id);
+            return ids;
+        });
+    }
+
+    /**
+     * Remove a product from its category, dropping the bucket once empty
+     */
+    void remove(Product product) {
+        if (product.getCategory() == null) {
+            return;
+        }
+        long id = Long.parseLong(product.getId());
+        idsByCategory.computeIfPresent(key(product.getCategory()), (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Get the IDs of all products in a category, in ascending order (live view)
+     */
+    NavigableSet<Long> ids(String category) {
+        return idsByCategory.getOrDefault(key(category), Collections.emptyNavigableSet());
+    }
+
+    /**
+     * Record that a category's content changed; versions only move forward
+     */
+    void touch(String category, long version) {
+        if (category != null) {
+            versions.computeIfAbsent(key(category), k -> new AtomicLong()).accumulateAndGet(version, Math::max);
+        }
+    }
+
+    /**
+     * Version of a category's content, 0 if it never changed
+     */
+    long version(String category) {
+        AtomicLong version = versions.get(key(category));
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * Whether two category names, either possibly null, share one bucket
+     */
+    static boolean sameKey(String a, String b) {
+        return a == null ? b == null : b != null && key(a).equals(key(b));
+    }
+
+    /**
+     * Normalize a category name into its index key
+     */
+    static String key(String category) {
+        return category.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,17 @@
+package com.learning.java.spark.rest_api_demo.service;
+
+/**
+ * Thrown when a quantity change would take a product's stock below zero
+ */
+public class InsufficientStockException extends IllegalStateException {
+    private final int available;
+
+    public InsufficientStockException(String id, int available, int requested) {
+        super("Insufficient stock for product " + id + ": " + available + " available, " + requested + " requested");
+        this.available = available;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+}
@@ -0,0 +1,122 @@
+package com.learning.java.spark.rest_api_demo.service;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to int values, without boxing
+ * Used for search posting lists (product ID to term frequency) and for scoring.
+ * Not thread-safe; callers provide their own locking.
+ */
+class LongIntMap {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final float MAX_LOAD = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Value for a key, or 0 when absent
+     */
+    int get(long key) {
+        int slot = find(key);
+        return keys[slot] == EMPTY ? 0 : values[slot];
+    }
+
+    void put(long key, int value) {
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+            values[slot] = value;
+            if (size > keys.length * MAX_LOAD) {
+                resize(keys.length * 2);
+            }
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    void add(long key, int delta) {
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            put(key, delta);
+        } else {
+            values[slot] += delta;
+        }
+    }
+
+    void remove(long key) {
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            return;
+        }
+        keys[slot] = EMPTY;
+        size--;
+        // Re-insert the rest of the probe run so later lookups do not stop early
+        int mask = keys.length - 1;
+        for (int i = (slot + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            long movedKey = keys[i];
+            int movedValue = values[i];
+            keys[i] = EMPTY;
+            size--;
+            put(movedKey, movedValue);
+        }
+        if (size < keys.length / 8 && keys.length > 16) {
+            resize(keys.length / 2);
+        }
+    }
+
+    /**
+     * Visit every entry
+     */
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                visitor.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    interface Visitor {
+        void accept(long key, int value);
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.learning.java.spark.rest_api_demo.service;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Sorted index over product price, for range scans in O(log N + k)
+ * Entries are ordered by price, then by ID, so equal prices still have a stable order.
+ * ProductService serializes updates per product ID.
+ */
+class PriceIndex {
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    /**
+     * Index entry for one product
+     */
+    record Entry(double price, long id) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byPrice = Double.compare(price, other.price);
+            return byPrice != 0 ? byPrice : Long.compare(id, other.id);
+        }
+    }
+
+    void add(Product product) {
+        entries.add(new Entry(product.getPrice(), Long.parseLong(product.getId())));
+    }
+
+    /**
+     * Add entries already sorted by price and ID, such as a whole catalog being loaded
+     * Each insert then lands right after the previous one, which the skip list finds far
+     * faster than a random position.
+     */
+    void addSorted(Entry[] sorted) {
+        for (Entry entry : sorted) {
+            entries.add(entry);
+        }
+    }
+
+    void remove(Product product) {
+        entries.remove(new Entry(product.getPrice(), Long.parseLong(product.getId())));
+    }
+
+    /**
+     * Entries with minPrice <= price <= maxPrice that come after the given entry (live view)
+     * Null bounds are open; a null "after" starts at the beginning of the range.
+     */
+    NavigableSet<Entry> range(Double minPrice, Double maxPrice, Entry after) {
+        Entry from = minPrice == null ? null : new Entry(minPrice, Long.MIN_VALUE);
+        boolean fromInclusive = true;
+        if (after != null && (from == null || after.compareTo(from) >= 0)) {
+            from = after;
+            fromInclusive = false;
+        }
+        Entry to = maxPrice == null ? null : new Entry(maxPrice, Long.MAX_VALUE);
+
+        if (from != null && to != null) {
+            if (from.compareTo(to) > 0) {
+                return Collections.emptyNavigableSet();
+            }
+            return entries.subSet(from, fromInclusive, to, true);
+        }
+        if (from != null) {
+            return entries.tailSet(from, fromInclusive);
+        }
+        if (to != null) {
+            return entries.headSet(to, true);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,12 @@
+package com.learning.java.spark.rest_api_demo.service;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+
+/**
+ * Notified after every product write becomes visible
+ * Either side is null for creates and deletes.
+ */
+@FunctionalInterface
+public interface ProductChangeListener {
+    void onChange(Product before, Product after);
+}
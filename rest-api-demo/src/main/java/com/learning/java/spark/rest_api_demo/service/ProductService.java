@@ -1,109 +1,811 @@
 package com.learning.java.spark.rest_api_demo.service;
 
+import com.learning.java.spark.rest_api_demo.model.CatalogStats;
 import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.model.ProductPage;
+import com.learning.java.spark.rest_api_demo.model.ProductPatch;
+import com.learning.java.spark.rest_api_demo.model.ProductQuery;
+import com.learning.java.spark.rest_api_demo.model.ProductStats;
+import com.learning.java.spark.rest_api_demo.service.id.AtomicIdGenerator;
+import com.learning.java.spark.rest_api_demo.service.id.IdGenerator;
+import com.learning.java.spark.rest_api_demo.service.persistence.SnapshotSettings;
+import com.learning.java.spark.rest_api_demo.service.persistence.SnapshotStore;
+import com.learning.java.spark.rest_api_demo.service.persistence.WalRecord;
+import com.learning.java.spark.rest_api_demo.service.persistence.WalSettings;
+import com.learning.java.spark.rest_api_demo.service.persistence.WriteAheadLog;
+import com.learning.java.spark.rest_api_demo.service.store.ProductStore;
+import com.learning.java.spark.rest_api_demo.service.store.ProductStores;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 
 /**
  * Service layer for Product operations
- * In-memory storage for demonstration purposes
+ * In-memory storage, optionally made durable by a write-ahead log and periodic snapshots.
+ * Products are held in compact form by a {@link ProductStore}; writes to one product are
+ * serialized by a lock stripe chosen by its ID, so there is no lock across the catalog.
  */
-public class ProductService {
-    private final Map<String, Product> products = new ConcurrentHashMap<>();
-    private int idCounter = 1;
+public class ProductService implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ProductService.class);
+
+    private static final int LOCK_STRIPES = 256;
+
+    // Products ordered by numeric ID, so pages are read without copying or sorting
+    private final ProductStore store;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final CategoryIndex categoryIndex = new CategoryIndex();
+    private final PriceIndex priceIndex = new PriceIndex();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final CatalogAggregates aggregates = new CatalogAggregates();
+    // Source of product and listing versions; catalogVersion only moves forward
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private final IdGenerator idGenerator;
+    private final WriteAheadLog wal;
+    private final SnapshotStore snapshots;
+    private final ScheduledExecutorService snapshotScheduler;
+    private final List<ProductChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    // Log records applied on startup; only touched by the constructor's thread
+    private int replayedRecords;
 
     public ProductService() {
-        // Seed with sample data
-        seedData();
+        this(new AtomicIdGenerator());
+    }
+
+    public ProductService(IdGenerator idGenerator) {
+        this(idGenerator, null, null);
+    }
+
+    public ProductService(IdGenerator idGenerator, WalSettings walSettings) {
+        this(idGenerator, walSettings, null);
     }
 
     /**
-     * Get all products
+     * Create the service, restoring its state when persistence is configured
+     * The newest snapshot is loaded first, then the write-ahead log is replayed from the
+     * position the snapshot recorded.
+     */
+    public ProductService(IdGenerator idGenerator, WalSettings walSettings, SnapshotSettings snapshotSettings) {
+        this(idGenerator, walSettings, snapshotSettings, ProductStores.heap());
+    }
+
+    public ProductService(IdGenerator idGenerator, WalSettings walSettings, SnapshotSettings snapshotSettings,
+                          ProductStore store) {
+        this.idGenerator = idGenerator;
+        this.store = store;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.snapshots = snapshotSettings == null ? null : new SnapshotStore(snapshotSettings.directory());
+
+        Optional<SnapshotStore.SnapshotInfo> snapshot = snapshots == null ? Optional.empty() : loadSnapshot();
+        long walFrom = snapshot.map(SnapshotStore.SnapshotInfo::walPosition).orElse(0L);
+        this.wal = walSettings == null ? null : openWal(walSettings, walFrom);
+
+        // Seed with sample data only on a fresh start; a catalog emptied on purpose stays empty
+        if (snapshot.isEmpty() && replayedRecords == 0) {
+            seedData();
+        }
+
+        if (snapshots == null) {
+            this.snapshotScheduler = null;
+        } else {
+            if (wal != null && wal.position() < walFrom) {
+                // The log lost its tail after the snapshot was taken; start a new baseline
+                writeSnapshot();
+            }
+            this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "product-snapshots");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = snapshotSettings.intervalSeconds();
+            snapshotScheduler.scheduleWithFixedDelay(this::writeSnapshotQuietly, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Get all products, in ascending ID order
+     * Copies the whole catalog; list endpoints should use getProductsPage instead
      */
     public List<Product> getAllProducts() {
-        return new ArrayList<>(products.values());
+        List<Product> all = new ArrayList<>(store.size());
+        store.ascendingFrom(0).forEachRemaining(all::add);
+        return all;
     }
 
     /**
      * Get products by category
+     * Served from the category index, so the cost follows the result size
      */
     public List<Product> getProductsByCategory(String category) {
-        return products.values().stream().filter(p -> category.equalsIgnoreCase(p.getCategory())).collect(Collectors.toList());
+        List<Product> result = new ArrayList<>();
+        for (Long id : categoryIndex.ids(category)) {
+            Product product = store.get(id);
+            // The index is updated ahead of the store, so skip entries still in flight
+            if (product != null && category.equalsIgnoreCase(product.getCategory())) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get one page of products matching a query
+     * Listings are ordered by ID, or by price then ID when a price bound is given. The cursor
+     * is the opaque value returned as nextCursor by the previous page; it marks the last
+     * product seen, so pages stay stable under concurrent inserts and deletes.
+     */
+    public ProductPage getProductsPage(ProductQuery query) {
+        if (query.limit() <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        if (query.minPrice() != null && query.maxPrice() != null && query.minPrice() > query.maxPrice()) {
+            throw new IllegalArgumentException("minPrice cannot be greater than maxPrice");
+        }
+        Cursor after = query.cursor() == null || query.cursor().isEmpty() ? null : Cursor.decode(query.cursor());
+
+        Iterator<Product> candidates;
+        if (query.hasPriceRange()) {
+            if (after != null && !after.byPrice()) {
+                throw new IllegalArgumentException("Invalid cursor: " + query.cursor());
+            }
+            PriceIndex.Entry from = after == null ? null : new PriceIndex.Entry(after.price(), after.id());
+            candidates = lookup(priceIndex.range(query.minPrice(), query.maxPrice(), from).iterator(), PriceIndex.Entry::id);
+        } else {
+            if (after != null && after.byPrice()) {
+                throw new IllegalArgumentException("Invalid cursor: " + query.cursor());
+            }
+            long afterId = after == null ? 0 : after.id();
+            candidates = query.hasCategory()
+                    ? lookup(categoryIndex.ids(query.category()).tailSet(afterId, false).iterator(), Long::longValue)
+                    : store.ascendingFrom(afterId);
+        }
+
+        List<Product> items = new ArrayList<>(Math.min(query.limit(), 1024));
+        boolean hasMore = false;
+        while (candidates.hasNext()) {
+            Product product = candidates.next();
+            // Indexes are updated ahead of the store, so skip entries still in flight
+            if (product == null || !matches(product, query)) {
+                continue;
+            }
+            if (items.size() == query.limit()) {
+                hasMore = true;
+                break;
+            }
+            items.add(product);
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            Product last = items.get(items.size() - 1);
+            nextCursor = new Cursor(query.hasPriceRange(), last.getPrice(), Long.parseLong(last.getId())).encode();
+        }
+        return new ProductPage(items, nextCursor);
+    }
+
+    /**
+     * Full-text search over product name and description, best matches first
+     */
+    public List<Product> searchProducts(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query is required");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        List<Product> results = new ArrayList<>();
+        for (SearchIndex.Hit hit : searchIndex.search(query, limit)) {
+            Product product = store.get(hit.id());
+            if (product != null) {
+                results.add(product);
+            }
+        }
+        return results;
     }
 
     /**
      * Get product by ID
      */
     public Optional<Product> getProductById(String id) {
-        return Optional.ofNullable(products.get(id));
+        long key = parseId(id);
+        return key < 0 ? Optional.empty() : Optional.ofNullable(store.get(key));
     }
 
     /**
      * Create a new product
      */
     public Product createProduct(Product product) {
-        product.validate();
-
-        String id = String.valueOf(idCounter++);
-        product.setId(id);
-        product.setCreatedAt(LocalDateTime.now());
-        product.setUpdatedAt(LocalDateTime.now());
-
-        products.put(id, product);
+        awaitDurable(insert(product));
         return product;
     }
 
+    /**
+     * Create a batch of products
+     * Each product is validated and inserted on its own, but the batch waits for the
+     * write-ahead log only once, after the last insert.
+     */
+    public List<Product> createProducts(List<Product> batch) {
+        long logPosition = 0;
+        for (Product product : batch) {
+            logPosition = Math.max(logPosition, insert(product));
+        }
+        awaitDurable(logPosition);
+        return batch;
+    }
+
     /**
      * Update an existing product
      */
     public Optional<Product> updateProduct(String id, Product updatedProduct) {
-        Product existing = products.get(id);
-        if (existing == null) {
-            return Optional.empty();
+        long[] logPosition = {0};
+        Product[] previous = {null};
+        Product updated = computeIfPresent(id, existing -> {
+            updatedProduct.validate();
+            updatedProduct.setId(id);
+            updatedProduct.setCreatedAt(existing.getCreatedAt());
+            updatedProduct.setUpdatedAt(LocalDateTime.now());
+
+            // Logged before it is applied, so a write the log refuses never becomes visible
+            logPosition[0] = appendToWal(WalRecord.put(updatedProduct));
+            // Overwrite in place: the product must never be missing from the store mid-update
+            reindex(existing, updatedProduct);
+            previous[0] = existing;
+            return updatedProduct;
+        });
+        if (updated != null) {
+            publish(previous[0], updated);
         }
+        awaitDurable(logPosition[0]);
+        return Optional.ofNullable(updated);
+    }
 
-        updatedProduct.validate();
-        updatedProduct.setId(id);
-        updatedProduct.setCreatedAt(existing.getCreatedAt());
-        updatedProduct.setUpdatedAt(LocalDateTime.now());
+    /**
+     * Apply the fields of a patch to the stored product atomically
+     * The patch is applied to a copy while the product's lock is held, so concurrent patches
+     * to different fields both land, and only the indexes over changed fields are updated.
+     * An empty patch changes nothing and returns the product as it is.
+     */
+    public Optional<Product> patchProduct(String id, ProductPatch patch) {
+        if (patch.isEmpty()) {
+            return getProductById(id);
+        }
+        long[] logPosition = {0};
+        Product[] previous = {null};
+        Product updated = computeIfPresent(id, existing -> {
+            Product patched = existing.copy();
+            patch.applyTo(patched);
+            patched.validate();
+            patched.setUpdatedAt(LocalDateTime.now());
+            logPosition[0] = appendToWal(WalRecord.put(patched));
+            reindex(existing, patched);
+            previous[0] = existing;
+            return patched;
+        });
+        if (updated != null) {
+            publish(previous[0], updated);
+        }
+        awaitDurable(logPosition[0]);
+        return Optional.ofNullable(updated);
+    }
 
-        products.put(id, updatedProduct);
-        return Optional.of(updatedProduct);
+    /**
+     * Atomically add delta to a product's quantity, never letting it drop below zero
+     * Only the product's lock stripe is held, so other products are written in parallel. The
+     * change goes through reindex like any other update: the category, price and search indexes
+     * are left alone because none of them depend on quantity, while the stock aggregates are
+     * moved to the new quantity.
+     *
+     * @return the updated product, or empty if there is no product with this ID
+     * @throws InsufficientStockException if delta would take the quantity below zero
+     */
+    public Optional<Product> adjustQuantity(String id, int delta) {
+        long[] logPosition = {0};
+        Product[] previous = {null};
+        Product updated = computeIfPresent(id, existing -> {
+            long quantity = (long) existing.getQuantity() + delta;
+            if (quantity < 0) {
+                throw new InsufficientStockException(id, existing.getQuantity(), -delta);
+            }
+            if (quantity > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Quantity cannot exceed " + Integer.MAX_VALUE);
+            }
+            Product adjusted = existing.copy();
+            adjusted.setQuantity((int) quantity);
+            adjusted.setUpdatedAt(LocalDateTime.now());
+            logPosition[0] = appendToWal(WalRecord.put(adjusted));
+            reindex(existing, adjusted);
+            previous[0] = existing;
+            return adjusted;
+        });
+        if (updated != null) {
+            publish(previous[0], updated);
+        }
+        awaitDurable(logPosition[0]);
+        return Optional.ofNullable(updated);
     }
 
     /**
      * Delete a product
      */
     public boolean deleteProduct(String id) {
-        return products.remove(id) != null;
+        long[] logPosition = {0};
+        Product[] deleted = {null};
+        computeIfPresent(id, existing -> {
+            logPosition[0] = appendToWal(WalRecord.delete(Long.parseLong(id)));
+            unindex(existing);
+            deleted[0] = existing;
+            return null;
+        });
+        if (deleted[0] != null) {
+            publish(deleted[0], null);
+        }
+        awaitDurable(logPosition[0]);
+        return deleted[0] != null;
     }
 
     /**
      * Check if product exists
      */
     public boolean exists(String id) {
-        return products.containsKey(id);
+        long key = parseId(id);
+        return key >= 0 && store.contains(key);
     }
 
     /**
      * Get product count
      */
     public int getProductCount() {
-        return products.size();
+        return store.size();
+    }
+
+    /**
+     * Count, stock and value figures for the catalog and each category, kept up to date by every write
+     */
+    public CatalogStats getStats() {
+        return aggregates.stats();
+    }
+
+    /**
+     * Count, stock and value figures for one category
+     */
+    public ProductStats getStats(String category) {
+        return aggregates.stats(category);
     }
 
     /**
      * Clear all products (useful for testing)
      */
     public void clearAll() {
-        products.clear();
-        idCounter = 1;
+        // Remove one by one so the category index stays in step with the store
+        List<String> ids = new ArrayList<>(store.size());
+        store.ascendingFrom(0).forEachRemaining(product -> ids.add(product.getId()));
+        ids.forEach(this::deleteProduct);
+        idGenerator.reset();
+        // Creates that ran alongside the clear keep their IDs
+        store.ascendingFrom(0).forEachRemaining(product -> idGenerator.advancePast(Long.parseLong(product.getId())));
+    }
+
+    /**
+     * Write a snapshot of the whole catalog without blocking writers
+     * The log moves to a new segment first, and every write logged before it is let finish
+     * applying to the store; replaying the log from it on restart covers writes made meanwhile.
+     * Once the snapshot is safely written, log segments older than every retained snapshot are deleted.
+     */
+    public synchronized void writeSnapshot() {
+        if (snapshots == null) {
+            throw new IllegalStateException("Snapshots are not configured");
+        }
+        long walPosition = wal == null ? 0 : wal.rotate();
+        awaitLoggedWrites();
+        try {
+            snapshots.write(() -> store.ascendingFrom(0), walPosition);
+            if (wal != null) {
+                snapshots.retainedWalPosition().ifPresent(wal::dropBefore);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot", e);
+        }
+    }
+
+    /**
+     * Take a final snapshot, then flush and close the write-ahead log
+     */
+    @Override
+    public void close() throws IOException {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+            writeSnapshot();
+        }
+        if (wal != null) {
+            wal.close();
+        }
+    }
+
+    /**
+     * Validate, assign an ID and store a new product, returning its log position
+     */
+    private long insert(Product product) {
+        product.validate();
+        product.setCreatedAt(LocalDateTime.now());
+        product.setUpdatedAt(LocalDateTime.now());
+
+        long[] logPosition = {0};
+        while (true) {
+            long key = idGenerator.nextId();
+            product.setId(String.valueOf(key));
+            Product stored = compute(product.getId(), existing -> {
+                // A create never overwrites: the ID may be taken if the generator was reset
+                // while other creates were in flight, or started below IDs restored from disk
+                if (existing != null) {
+                    return existing;
+                }
+                logPosition[0] = appendToWal(WalRecord.put(product));
+                index(product);
+                return product;
+            });
+            if (stored == product) {
+                break;
+            }
+            idGenerator.advancePast(lastTakenId(key));
+        }
+        publish(null, product);
+        return logPosition[0];
+    }
+
+    /**
+     * Last ID of the run of consecutive stored IDs starting at a taken one
+     */
+    private long lastTakenId(long takenId) {
+        long last = takenId;
+        Iterator<Product> following = store.ascendingFrom(takenId);
+        while (following.hasNext() && Long.parseLong(following.next().getId()) == last + 1) {
+            last++;
+        }
+        return last;
+    }
+
+    /**
+     * Register a listener for product writes
+     * Listeners run on the writing thread after the change is visible, so they should be quick.
+     */
+    public void addChangeListener(ProductChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Version of everything a listing query can return
+     * Category-only listings follow their category; anything else follows the whole catalog.
+     * Read it before reading the listing: the listing is then at least as new as the version.
+     */
+    public long getListVersion(ProductQuery query) {
+        if (query.hasCategory() && !query.hasPriceRange()) {
+            return categoryIndex.version(query.category());
+        }
+        return catalogVersion.get();
+    }
+
+    /**
+     * Bump listing versions once a write is visible in the store
+     * Doing this after the compute means a reader that sees a version also sees the data behind it.
+     */
+    private void publish(Product before, Product after) {
+        long version = versionSequence.incrementAndGet();
+        if (before != null) {
+            categoryIndex.touch(before.getCategory(), version);
+        }
+        if (after != null) {
+            categoryIndex.touch(after.getCategory(), version);
+        }
+        catalogVersion.accumulateAndGet(version, Math::max);
+        for (ProductChangeListener listener : changeListeners) {
+            listener.onChange(before, after);
+        }
+    }
+
+    /**
+     * Add a product to the secondary structures; called while holding the product's lock
+     */
+    private void index(Product product) {
+        product.setVersion(versionSequence.incrementAndGet());
+        addToIndexes(product);
+        store.put(product);
+    }
+
+    private void addToIndexes(Product product) {
+        categoryIndex.add(product);
+        priceIndex.add(product);
+        searchIndex.add(product);
+        aggregates.add(product);
+    }
+
+    /**
+     * Swap a stored product for a changed copy with the same ID, touching only the indexes over
+     * fields that differ; called while holding the product's lock
+     */
+    private void reindex(Product existing, Product updated) {
+        updated.setVersion(versionSequence.incrementAndGet());
+        // New entries go in before old ones come out, so filtered listings and searches never miss the product
+        if (!Objects.equals(existing.getCategory(), updated.getCategory())) {
+            categoryIndex.add(updated);
+            if (!CategoryIndex.sameKey(existing.getCategory(), updated.getCategory())) {
+                categoryIndex.remove(existing);
+            }
+        }
+        if (Double.compare(existing.getPrice(), updated.getPrice()) != 0) {
+            priceIndex.add(updated);
+            priceIndex.remove(existing);
+        }
+        if (!Objects.equals(existing.getName(), updated.getName())
+                || !Objects.equals(existing.getDescription(), updated.getDescription())) {
+            searchIndex.update(existing, updated);
+        }
+        if (!Objects.equals(existing.getCategory(), updated.getCategory())
+                || Double.compare(existing.getPrice(), updated.getPrice()) != 0
+                || existing.getQuantity() != updated.getQuantity()) {
+            aggregates.remove(existing);
+            aggregates.add(updated);
+        }
+        store.put(updated);
+    }
+
+    /**
+     * Remove a product from the secondary structures; called while holding the product's lock
+     */
+    private void unindex(Product product) {
+        categoryIndex.remove(product);
+        priceIndex.remove(product);
+        searchIndex.remove(product);
+        aggregates.remove(product);
+        store.remove(Long.parseLong(product.getId()));
+    }
+
+    /**
+     * Log a write; called while holding the product's lock, before the write touches the store
+     */
+    private long appendToWal(WalRecord record) {
+        return wal == null ? 0 : wal.append(record);
+    }
+
+    /**
+     * Wait out writes that are logged but not yet applied
+     * Writes append to the log and apply to the store under one lock stripe, so once each stripe
+     * has been taken in turn, every write logged so far is visible in the store.
+     */
+    private void awaitLoggedWrites() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+            lock.unlock();
+        }
+    }
+
+    private void awaitDurable(long logPosition) {
+        if (wal != null && logPosition > 0) {
+            wal.awaitDurable(logPosition);
+        }
+    }
+
+    private void writeSnapshotQuietly() {
+        try {
+            writeSnapshot();
+        } catch (RuntimeException e) {
+            log.error("snapshot failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Load the newest snapshot, if there is one
+     * Its products go straight into the store as they are decoded, and the indexes are built
+     * afterwards in one parallel pass; nothing else runs yet, so neither step takes a lock stripe.
+     */
+    private Optional<SnapshotStore.SnapshotInfo> loadSnapshot() {
+        try {
+            Optional<SnapshotStore.SnapshotInfo> snapshot = snapshots.loadLatest(product -> {
+                product.setVersion(versionSequence.incrementAndGet());
+                store.put(product);
+            });
+            snapshot.ifPresent(info -> {
+                indexStored(info.maxId());
+                idGenerator.advancePast(info.maxId());
+            });
+            return snapshot;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load snapshot", e);
+        }
+    }
+
+    /**
+     * Add every stored product to the secondary structures, splitting the IDs into ranges
+     * indexed in parallel; the indexes take concurrent adds of different products. Price
+     * entries are gathered and sorted first, since the price index fills fastest in order.
+     */
+    private void indexStored(long maxId) {
+        long started = System.nanoTime();
+        int ranges = ForkJoinPool.getCommonPoolParallelism() * 8;
+        long span = maxId / ranges + 1;
+        PriceIndex.Entry[] prices = IntStream.range(0, ranges).parallel().mapToObj(range -> {
+            List<PriceIndex.Entry> rangePrices = new ArrayList<>();
+            long last = (range + 1) * span;
+            Iterator<Product> products = store.ascendingFrom(range * span);
+            while (products.hasNext()) {
+                Product product = products.next();
+                long id = Long.parseLong(product.getId());
+                if (id > last) {
+                    break;
+                }
+                categoryIndex.add(product);
+                searchIndex.add(product);
+                aggregates.add(product);
+                rangePrices.add(new PriceIndex.Entry(product.getPrice(), id));
+            }
+            return rangePrices;
+        }).flatMap(List::stream).toArray(PriceIndex.Entry[]::new);
+        Arrays.parallelSort(prices);
+        priceIndex.addSorted(prices);
+        log.info("Indexed {} products in {} ms", store.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private WriteAheadLog openWal(WalSettings settings, long fromPosition) {
+        try {
+            WriteAheadLog opened = WriteAheadLog.open(settings, fromPosition, this::replay);
+            log.info("Restored {} products from write-ahead log {}", store.size(), settings.path());
+            return opened;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open write-ahead log " + settings.path(), e);
+        }
+    }
+
+    /**
+     * Apply a logged write without logging it again
+     */
+    private void replay(WalRecord record) {
+        replayedRecords++;
+        String id = String.valueOf(record.id());
+        if (record.operation() == WalRecord.Operation.PUT) {
+            restore(record.product());
+        } else {
+            computeIfPresent(id, existing -> {
+                unindex(existing);
+                return null;
+            });
+        }
+        idGenerator.advancePast(record.id());
+    }
+
+    /**
+     * Put a restored product in place without logging it
+     */
+    private void restore(Product product) {
+        compute(product.getId(), existing -> {
+            if (existing != null) {
+                reindex(existing, product);
+            } else {
+                index(product);
+            }
+            return product;
+        });
+    }
+
+    /**
+     * Run a write against the product stored under id while holding its lock stripe
+     * Works like ConcurrentHashMap.compute: the function sees the current product or null, and
+     * keeps the store in step itself through index, reindex and unindex.
+     */
+    private Product compute(String id, UnaryOperator<Product> write) {
+        long key = parseId(id);
+        if (key < 0) {
+            throw new IllegalArgumentException("Invalid product id: " + id);
+        }
+        ReentrantLock lock = locks[Long.hashCode(key * 0x9E3779B97F4A7C15L) & (LOCK_STRIPES - 1)];
+        lock.lock();
+        try {
+            return write.apply(store.get(key));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Like compute, but only runs the write when the product exists
+     */
+    private Product computeIfPresent(String id, UnaryOperator<Product> write) {
+        if (parseId(id) < 0) {
+            return null;
+        }
+        return compute(id, existing -> existing == null ? null : write.apply(existing));
+    }
+
+    /**
+     * Numeric value of a product ID, or -1 for anything that cannot be one
+     */
+    private static long parseId(String id) {
+        if (id == null || id.isEmpty() || id.length() > 19) {
+            return -1;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (id.charAt(i) < '0' || id.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private <T> Iterator<Product> lookup(Iterator<T> keys, ToLongFunction<T> toId) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public Product next() {
+                return store.get(toId.applyAsLong(keys.next()));
+            }
+        };
+    }
+
+    private static boolean matches(Product product, ProductQuery query) {
+        if (query.hasCategory() && !query.category().equalsIgnoreCase(product.getCategory())) {
+            return false;
+        }
+        if (query.minPrice() != null && product.getPrice() < query.minPrice()) {
+            return false;
+        }
+        return query.maxPrice() == null || product.getPrice() <= query.maxPrice();
+    }
+
+    /**
+     * Position after the last product of a page: its ID, plus its price for price-ordered listings
+     */
+    private record Cursor(boolean byPrice, double price, long id) {
+
+        String encode() {
+            String value = byPrice ? "price:" + price + ":" + id : "id:" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                if (decoded.startsWith("id:")) {
+                    return new Cursor(false, 0, Long.parseLong(decoded.substring(3)));
+                }
+                if (decoded.startsWith("price:")) {
+                    int separator = decoded.lastIndexOf(':');
+                    return new Cursor(true, Double.parseDouble(decoded.substring(6, separator)),
+                            Long.parseLong(decoded.substring(separator + 1)));
+                }
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                // fall through to the error below
+            }
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
     }
 
     /**
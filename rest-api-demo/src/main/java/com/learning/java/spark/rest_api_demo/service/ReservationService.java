@@ -0,0 +1,254 @@
+package com.learning.java.spark.rest_api_demo.service;
+
+import com.learning.java.spark.rest_api_demo.model.Reservation;
+import com.learning.java.spark.rest_api_demo.model.Reservation.Status;
+import com.learning.java.spark.rest_api_demo.service.persistence.ReservationJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds stock for buyers until they confirm, release or let the hold expire
+ * <p>
+ * Reserving takes the units out of the product's quantity through
+ * {@link ProductService#adjustQuantity}, which locks only that product's entry, so stock never goes
+ * below zero and concurrent buyers never overwrite each other. Each held reservation ends exactly
+ * once: release, confirm and expiry all race to remove it from the map, and only the winner acts.
+ * The reservation then keeps its final status, so a late release or confirm can tell the buyer it expired.
+ * <p>
+ * With a {@link ReservationJournal}, holds survive a restart: they are recovered still held and
+ * expire or end as usual. A hold is journaled after its stock is taken and its end before the
+ * stock goes back, so a crash between the two steps can strand one hold's units but never
+ * puts back units that were not taken.
+ */
+public class ReservationService implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ReservationService.class);
+    static final Duration DEFAULT_TTL = Duration.ofMinutes(15);
+    static final Duration MAX_TTL = Duration.ofDays(1);
+    static final int ENDED_KEPT = 10_000;
+
+    private final ProductService productService;
+    private final Map<String, Reservation> held = new ConcurrentHashMap<>();
+    // Held reservations in expiry order, so the sweeper only looks at the ones that are due
+    private final ConcurrentSkipListSet<Reservation> byExpiry = new ConcurrentSkipListSet<>(
+            Comparator.comparing(Reservation::expiresAt).thenComparing(Reservation::id));
+    // Most recently ended reservations with their final status; guarded by itself
+    private final Map<String, Reservation> ended = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Reservation> eldest) {
+            return size() > ENDED_KEPT;
+        }
+    });
+    private final AtomicLong sequence = new AtomicLong();
+    private final ReservationJournal journal;
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Create the service with a background thread that expires due reservations every second
+     */
+    public ReservationService(ProductService productService) {
+        this(productService, null, true);
+    }
+
+    /**
+     * Create the service, resuming the holds recovered by the journal, which it closes on {@link #close}
+     */
+    public ReservationService(ProductService productService, ReservationJournal journal) {
+        this(productService, journal, true);
+    }
+
+    ReservationService(ProductService productService, boolean sweep) {
+        this(productService, null, sweep);
+    }
+
+    ReservationService(ProductService productService, ReservationJournal journal, boolean sweep) {
+        this.productService = productService;
+        this.journal = journal;
+        if (journal != null) {
+            for (Reservation reservation : journal.held()) {
+                held.put(reservation.id(), reservation);
+                byExpiry.add(reservation);
+                sequence.accumulateAndGet(Long.parseLong(reservation.id()), Math::max);
+            }
+        }
+        if (sweep) {
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "reservation-expiry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleWithFixedDelay(this::expireQuietly, 1, 1, TimeUnit.SECONDS);
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    /**
+     * Take quantity units of a product out of stock for ttl, or the default 15 minutes when ttl is null
+     *
+     * @return the held reservation, or empty if there is no such product
+     * @throws InsufficientStockException if fewer than quantity units are in stock
+     */
+    public Optional<Reservation> reserve(String productId, int quantity, Duration ttl) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        Duration timeToLive = ttl == null ? DEFAULT_TTL : ttl;
+        if (timeToLive.isNegative() || timeToLive.isZero() || timeToLive.compareTo(MAX_TTL) > 0) {
+            throw new IllegalArgumentException("ttlSeconds must be between 1 and " + MAX_TTL.toSeconds());
+        }
+        if (productService.adjustQuantity(productId, -quantity).isEmpty()) {
+            return Optional.empty();
+        }
+
+        Reservation reservation = new Reservation(Long.toString(sequence.incrementAndGet()), productId, quantity,
+                Status.HELD, LocalDateTime.now().plus(timeToLive));
+        if (journal != null) {
+            try {
+                journal.recordHeld(reservation);
+            } catch (RuntimeException e) {
+                restock(reservation);
+                throw e;
+            }
+        }
+        held.put(reservation.id(), reservation);
+        byExpiry.add(reservation);
+        return Optional.of(reservation);
+    }
+
+    /**
+     * Put a held reservation's units back in stock
+     *
+     * @return the released reservation, or empty if the product holds no such reservation
+     */
+    public Optional<Reservation> release(String productId, String reservationId) {
+        return end(productId, reservationId, Status.RELEASED).map(reservation -> {
+            restock(reservation);
+            return reservation;
+        });
+    }
+
+    /**
+     * Make a held reservation's sale final; its units stay out of stock
+     *
+     * @return the confirmed reservation, or empty if the product holds no such reservation
+     */
+    public Optional<Reservation> confirm(String productId, String reservationId) {
+        return end(productId, reservationId, Status.CONFIRMED);
+    }
+
+    /**
+     * Look up a reservation that is held or recently ended
+     *
+     * @return the reservation in its current status, or empty if it is unknown or ended long ago
+     */
+    public Optional<Reservation> find(String reservationId) {
+        Reservation reservation = held.get(reservationId);
+        return Optional.ofNullable(reservation != null ? reservation : ended.get(reservationId));
+    }
+
+    /**
+     * Release every held reservation that expired at or before now
+     *
+     * @return number of reservations expired
+     */
+    public int expire(LocalDateTime now) {
+        int expired = 0;
+        for (Reservation reservation : byExpiry) {
+            if (reservation.expiresAt().isAfter(now)) {
+                break;
+            }
+            byExpiry.remove(reservation);
+            if (held.remove(reservation.id(), reservation)) {
+                finish(reservation.withStatus(Status.EXPIRED));
+                restock(reservation);
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Number of reservations currently holding stock
+     */
+    public int heldCount() {
+        return held.size();
+    }
+
+    @Override
+    public void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.error("failed to close reservation journal: {}", e.getMessage());
+            }
+        }
+    }
+
+    private Optional<Reservation> end(String productId, String reservationId, Status status) {
+        if (reservationId == null) {
+            throw new IllegalArgumentException("reservationId is required");
+        }
+        Reservation reservation = held.get(reservationId);
+        if (reservation == null || !reservation.productId().equals(productId) || !held.remove(reservationId, reservation)) {
+            return Optional.empty();
+        }
+        byExpiry.remove(reservation);
+        return Optional.of(finish(reservation.withStatus(status)));
+    }
+
+    /**
+     * Record how a hold ended, before any of its units go back in stock
+     * If the journal cannot take the record, the hold stays held so that it can end again.
+     */
+    private Reservation finish(Reservation reservation) {
+        if (journal != null) {
+            try {
+                journal.recordEnded(reservation);
+            } catch (RuntimeException e) {
+                Reservation stillHeld = reservation.withStatus(Status.HELD);
+                held.put(stillHeld.id(), stillHeld);
+                byExpiry.add(stillHeld);
+                throw e;
+            }
+        }
+        ended.put(reservation.id(), reservation);
+        return reservation;
+    }
+
+    /**
+     * Put units back; nothing to do if the product was deleted meanwhile
+     */
+    private void restock(Reservation reservation) {
+        productService.adjustQuantity(reservation.productId(), reservation.quantity());
+    }
+
+    private void expireQuietly() {
+        try {
+            int expired = expire(LocalDateTime.now());
+            if (expired > 0) {
+                log.info("Expired {} reservations", expired);
+            }
+        } catch (RuntimeException e) {
+            log.error("reservation expiry failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.learning.java.spark.rest_api_demo.service;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Inverted index over product name and description
+ * <p>
+ * Text is split on anything that is not a letter or digit and lowercased. Each term maps to
+ * a posting list of product ID to term frequency, stored as a primitive hash map. Updates are
+ * incremental: ProductService moves a product from its old postings to its new ones while
+ * holding the product's lock, and the term dictionary serializes updates per term.
+ */
+class SearchIndex {
+    private final Map<String, PostingList> postings = new ConcurrentHashMap<>();
+
+    /**
+     * One product ID with its search score
+     */
+    record Hit(long id, int matchedTerms, int termFrequency) {
+    }
+
+    void add(Product product) {
+        long id = Long.parseLong(product.getId());
+        termFrequencies(product).forEach((term, frequency) -> put(term, id, frequency));
+    }
+
+    void remove(Product product) {
+        long id = Long.parseLong(product.getId());
+        termFrequencies(product).keySet().forEach(term -> remove(term, id));
+    }
+
+    /**
+     * Move a product with the same ID from its old text to its new text
+     * New postings go in before old terms are dropped, so a search never misses the product
+     * for a term that both versions contain.
+     */
+    void update(Product existing, Product updated) {
+        long id = Long.parseLong(updated.getId());
+        Map<String, Integer> frequencies = termFrequencies(updated);
+        frequencies.forEach((term, frequency) -> put(term, id, frequency));
+        for (String term : termFrequencies(existing).keySet()) {
+            if (!frequencies.containsKey(term)) {
+                remove(term, id);
+            }
+        }
+    }
+
+    private void put(String term, long id, int frequency) {
+        postings.compute(term, (t, list) -> {
+            if (list == null) {
+                list = new PostingList();
+            }
+            list.put(id, frequency);
+            return list;
+        });
+    }
+
+    private void remove(String term, long id) {
+        postings.computeIfPresent(term, (t, list) -> {
+            list.remove(id);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    /**
+     * Find the best matches for a free-text query
+     * Products matching more of the query terms rank first, then those with the higher
+     * total term frequency, then lower IDs.
+     */
+    List<Hit> search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        LongIntMap frequencies = new LongIntMap(64);
+        LongIntMap matches = new LongIntMap(64);
+        for (String term : terms) {
+            PostingList list = postings.get(term);
+            if (list != null) {
+                list.forEach((id, frequency) -> {
+                    frequencies.add(id, frequency);
+                    matches.add(id, 1);
+                });
+            }
+        }
+
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, SearchIndex::compareAscending);
+        matches.forEach((id, matched) -> {
+            best.add(new Hit(id, matched, frequencies.get(id)));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        });
+
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort((a, b) -> compareAscending(b, a));
+        return hits;
+    }
+
+    /**
+     * Split text into lowercase letter-or-digit terms
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static Map<String, Integer> termFrequencies(Product product) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokenize(product.getName())) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        for (String token : tokenize(product.getDescription())) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    /**
+     * Worst hit first, so the priority queue can drop it
+     */
+    private static int compareAscending(Hit a, Hit b) {
+        if (a.matchedTerms() != b.matchedTerms()) {
+            return Integer.compare(a.matchedTerms(), b.matchedTerms());
+        }
+        if (a.termFrequency() != b.termFrequency()) {
+            return Integer.compare(a.termFrequency(), b.termFrequency());
+        }
+        return Long.compare(b.id(), a.id());
+    }
+
+    /**
+     * Postings for one term; writes are serialized by the term dictionary, the lock
+     * keeps searches from reading a table in the middle of a resize
+     */
+    private static final class PostingList {
+        private final StampedLock lock = new StampedLock();
+        private final LongIntMap frequencies = new LongIntMap(4);
+
+        void put(long id, int frequency) {
+            long stamp = lock.writeLock();
+            try {
+                frequencies.put(id, frequency);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void remove(long id) {
+            long stamp = lock.writeLock();
+            try {
+                frequencies.remove(id);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean isEmpty() {
+            return frequencies.isEmpty();
+        }
+
+        void forEach(LongIntMap.Visitor visitor) {
+            long stamp = lock.readLock();
+            try {
+                frequencies.forEach(visitor);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
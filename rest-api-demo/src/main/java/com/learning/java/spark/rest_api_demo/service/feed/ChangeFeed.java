@@ -0,0 +1,187 @@
+package com.learning.java.spark.rest_api_demo.service.feed;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.model.ProductChange;
+import com.learning.java.spark.rest_api_demo.service.ProductChangeListener;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded in-memory feed of product changes, read by subscribers at their own pace
+ * <p>
+ * Each write is numbered and stored in a ring buffer holding the latest changes. Storing one
+ * takes a counter increment and a reference swap, so writers never wait for subscribers. Each
+ * subscriber reads through its own {@link Cursor}. A cursor that falls more than a buffer behind
+ * loses its place and reports a gap, so slow readers cost no memory beyond the buffer.
+ * <p>
+ * Event IDs carry the time the feed started, so a Last-Event-ID resumes only against the
+ * process that issued it and only while the change is still buffered. Listeners run after a
+ * write releases its lock, so two changes to one product can be numbered out of order; their
+ * version orders them.
+ */
+public class ChangeFeed implements ProductChangeListener, AutoCloseable {
+    private final AtomicReferenceArray<Event> ring;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong(1);
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Semaphore subscribers;
+    private final Set<Thread> readers = ConcurrentHashMap.newKeySet();
+    private final long heartbeatMillis;
+    private volatile boolean closed;
+
+    /**
+     * A numbered change; id is the sequence qualified by the feed's start time
+     */
+    public record Event(String id, long sequence, ProductChange change) {
+    }
+
+    public ChangeFeed(ChangeFeedSettings settings) {
+        int capacity = Integer.highestOneBit(settings.bufferSize() - 1 | 1) << 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.subscribers = new Semaphore(settings.maxSubscribers());
+        this.heartbeatMillis = TimeUnit.SECONDS.toMillis(settings.heartbeatSeconds());
+    }
+
+    @Override
+    public void onChange(Product before, Product after) {
+        long sequence = nextSequence.getAndIncrement();
+        Event event = new Event(epoch + "-" + sequence, sequence, ProductChange.of(before, after));
+        int slot = (int) (sequence & mask);
+        // A writer stalled for a whole lap of the ring must not overwrite a newer change
+        Event current;
+        do {
+            current = ring.get(slot);
+            if (current != null && current.sequence() > sequence) {
+                break;
+            }
+        } while (!ring.compareAndSet(slot, current, event));
+        for (Thread reader : readers) {
+            LockSupport.unpark(reader);
+        }
+    }
+
+    /**
+     * Open a cursor for the calling thread, or nothing when all subscriber slots are taken
+     * The cursor starts after lastEventId when that change is still buffered, otherwise at the
+     * next change, reporting a gap if an ID was given.
+     */
+    public Optional<Cursor> subscribe(String lastEventId) {
+        if (closed || !subscribers.tryAcquire()) {
+            return Optional.empty();
+        }
+        return Optional.of(new Cursor(lastEventId));
+    }
+
+    public long heartbeatMillis() {
+        return heartbeatMillis;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * End every subscription; cursors stop returning changes
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread reader : readers) {
+            LockSupport.unpark(reader);
+        }
+    }
+
+    /**
+     * Sequence to resume at for a Last-Event-ID, or -1 when it cannot be resumed
+     */
+    private long resumeAt(String lastEventId, long head) {
+        if (lastEventId == null || !lastEventId.startsWith(epoch + "-")) {
+            return -1;
+        }
+        long last;
+        try {
+            last = Long.parseLong(lastEventId.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (last < 0 || last >= head || head - (last + 1) > ring.length()) {
+            return -1;
+        }
+        return last + 1;
+    }
+
+    /**
+     * One subscriber's position in the feed, used by the thread that opened it
+     */
+    public final class Cursor implements AutoCloseable {
+        private final Thread reader = Thread.currentThread();
+        private long next;
+        private boolean gap;
+        private boolean open = true;
+
+        private Cursor(String lastEventId) {
+            readers.add(reader);
+            long head = nextSequence.get();
+            long resume = resumeAt(lastEventId, head);
+            next = resume < 0 ? head : resume;
+            gap = resume < 0 && lastEventId != null;
+        }
+
+        /**
+         * Next change, waiting up to timeoutMillis for one
+         * Returns null on timeout, once the feed is closed, or when the cursor has just lost its
+         * place; {@link #takeGap()} tells the last case apart.
+         */
+        public Event next(long timeoutMillis) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (!closed) {
+                Event event = ring.getAcquire((int) (next & mask));
+                if (event != null && event.sequence() == next) {
+                    next++;
+                    return event;
+                }
+                if (event != null && event.sequence() > next) {
+                    // Overwritten before it was read: skip to the newest change
+                    gap = true;
+                    next = nextSequence.get();
+                    return null;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Whether changes were missed since the last call, clearing the flag
+         */
+        public boolean takeGap() {
+            boolean missed = gap;
+            gap = false;
+            return missed;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                readers.remove(reader);
+                subscribers.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.learning.java.spark.rest_api_demo.service.feed;
+
+/**
+ * Change feed configuration
+ * <ul>
+ *     <li>products.changes.bufferSize - changes kept for resuming subscribers, rounded up to a power of two (default 4096)</li>
+ *     <li>products.changes.maxSubscribers - concurrent subscribers; each holds a request thread (default 32)</li>
+ *     <li>products.changes.heartbeatSeconds - idle time before a keep-alive comment is sent (default 15)</li>
+ * </ul>
+ */
+public record ChangeFeedSettings(int bufferSize, int maxSubscribers, long heartbeatSeconds) {
+    static final int DEFAULT_BUFFER_SIZE = 4096;
+    static final int DEFAULT_MAX_SUBSCRIBERS = 32;
+    static final long DEFAULT_HEARTBEAT_SECONDS = 15;
+
+    public ChangeFeedSettings {
+        if (bufferSize < 1 || bufferSize > 1 << 24) {
+            throw new IllegalArgumentException("products.changes.bufferSize must be between 1 and " + (1 << 24));
+        }
+        if (maxSubscribers < 0) {
+            throw new IllegalArgumentException("products.changes.maxSubscribers cannot be negative");
+        }
+        if (heartbeatSeconds < 1) {
+            throw new IllegalArgumentException("products.changes.heartbeatSeconds must be at least 1");
+        }
+    }
+
+    /**
+     * Read the settings from system properties
+     */
+    public static ChangeFeedSettings fromSystemProperties() {
+        return new ChangeFeedSettings(
+                Integer.getInteger("products.changes.bufferSize", DEFAULT_BUFFER_SIZE),
+                Integer.getInteger("products.changes.maxSubscribers", DEFAULT_MAX_SUBSCRIBERS),
+                Long.getLong("products.changes.heartbeatSeconds", DEFAULT_HEARTBEAT_SECONDS));
+    }
+}
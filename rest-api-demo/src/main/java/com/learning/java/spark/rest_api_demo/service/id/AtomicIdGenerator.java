@@ -0,0 +1,25 @@
+package com.learning.java.spark.rest_api_demo.service.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free ID generator for a single instance, counting up from 1
+ */
+public class AtomicIdGenerator implements IdGenerator {
+    private final AtomicLong next = new AtomicLong(1);
+
+    @Override
+    public long nextId() {
+        return next.getAndIncrement();
+    }
+
+    @Override
+    public void advancePast(long id) {
+        next.accumulateAndGet(id + 1, Math::max);
+    }
+
+    @Override
+    public void reset() {
+        next.set(1);
+    }
+}
@@ -0,0 +1,112 @@
+package com.learning.java.spark.rest_api_demo.service.id;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ID generator that leases ranges of IDs from an allocator file shared by several instances
+ * <p>
+ * The file holds a single big-endian long: the first ID not yet handed out to anyone.
+ * Leasing a block takes an exclusive file lock, bumps that value by the block size and
+ * forces it to disk, so instances only coordinate once per block. Inside a block IDs are
+ * handed out with a lock-free increment.
+ */
+public class BlockLeasingIdGenerator implements IdGenerator {
+    private static final Block EXHAUSTED = new Block(0, 0);
+    // File locks are held per JVM, so leases from this JVM must also be serialized in-process
+    private static final Object LEASE_LOCK = new Object();
+
+    private final Path allocatorFile;
+    private final int blockSize;
+    private volatile Block current = EXHAUSTED;
+
+    public BlockLeasingIdGenerator(Path allocatorFile, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.allocatorFile = allocatorFile;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public long nextId() {
+        while (true) {
+            Block block = current;
+            long id = block.next.getAndIncrement();
+            if (id < block.end) {
+                return id;
+            }
+            refill(block);
+        }
+    }
+
+    @Override
+    public synchronized void advancePast(long id) {
+        Block block = current;
+        // Inside the current block, skip ahead without a lease, so replaying a log costs none
+        if (id < block.end) {
+            block.next.accumulateAndGet(id + 1, Math::max);
+        } else {
+            current = leaseBlock(id + 1);
+        }
+    }
+
+    /**
+     * Drop the current block; the next call leases a fresh one
+     * The shared allocator is never rewound, because other instances may still
+     * hold IDs from earlier blocks.
+     */
+    @Override
+    public synchronized void reset() {
+        current = EXHAUSTED;
+    }
+
+    private synchronized void refill(Block exhausted) {
+        // Another thread may already have leased a new block
+        if (current == exhausted) {
+            current = leaseBlock(1);
+        }
+    }
+
+    private Block leaseBlock(long minStart) {
+        synchronized (LEASE_LOCK) {
+            return leaseBlockLocked(minStart);
+        }
+    }
+
+    private Block leaseBlockLocked(long minStart) {
+        try (FileChannel channel = FileChannel.open(allocatorFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            long start = 1;
+            if (channel.read(buffer, 0) == Long.BYTES) {
+                start = buffer.flip().getLong();
+            }
+            start = Math.max(start, minStart);
+
+            buffer.clear().putLong(start + blockSize).flip();
+            channel.write(buffer, 0);
+            channel.force(true);
+            return new Block(start, start + blockSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to lease IDs from " + allocatorFile, e);
+        }
+    }
+
+    private static final class Block {
+        final AtomicLong next;
+        final long end;
+
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
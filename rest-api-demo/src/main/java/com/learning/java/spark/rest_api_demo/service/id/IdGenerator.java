@@ -0,0 +1,24 @@
+package com.learning.java.spark.rest_api_demo.service.id;
+
+/**
+ * Source of unique numeric product IDs
+ * Implementations must be safe to call from many request threads at once.
+ */
+public interface IdGenerator {
+
+    /**
+     * Allocate the next ID
+     */
+    long nextId();
+
+    /**
+     * Make sure no ID up to and including the given one is handed out from now on
+     * Used after restoring products that were created by an earlier run.
+     */
+    void advancePast(long id);
+
+    /**
+     * Forget all allocated IDs (used when the catalog is cleared)
+     */
+    void reset();
+}
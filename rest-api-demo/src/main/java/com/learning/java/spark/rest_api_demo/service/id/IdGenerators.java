@@ -0,0 +1,33 @@
+package com.learning.java.spark.rest_api_demo.service.id;
+
+import java.nio.file.Path;
+
+/**
+ * Factory for the configured ID generator
+ * <ul>
+ *     <li>products.id.mode - "local" (default) or "leased"</li>
+ *     <li>products.id.file - allocator file shared by instances in leased mode</li>
+ *     <li>products.id.blockSize - IDs reserved per lease in leased mode</li>
+ * </ul>
+ */
+public final class IdGenerators {
+    static final String DEFAULT_ALLOCATOR_FILE = "product-ids.alloc";
+    static final int DEFAULT_BLOCK_SIZE = 10_000;
+
+    private IdGenerators() {
+    }
+
+    /**
+     * Build the ID generator described by system properties
+     */
+    public static IdGenerator fromSystemProperties() {
+        String mode = System.getProperty("products.id.mode", "local");
+        return switch (mode) {
+            case "local" -> new AtomicIdGenerator();
+            case "leased" -> new BlockLeasingIdGenerator(
+                    Path.of(System.getProperty("products.id.file", DEFAULT_ALLOCATOR_FILE)),
+                    Integer.getInteger("products.id.blockSize", DEFAULT_BLOCK_SIZE));
+            default -> throw new IllegalArgumentException("Unknown products.id.mode: " + mode);
+        };
+    }
+}
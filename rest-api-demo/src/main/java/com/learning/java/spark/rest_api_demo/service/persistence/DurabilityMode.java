@@ -0,0 +1,19 @@
+package com.learning.java.spark.rest_api_demo.service.persistence;
+
+/**
+ * How long a write waits for the write-ahead log before returning to the client
+ */
+public enum DurabilityMode {
+    /**
+     * Wait for an fsync covering the record; concurrent writers share whichever fsync runs first
+     */
+    SYNC,
+    /**
+     * Wait for the background flusher, which gathers records for a short window and fsyncs them together
+     */
+    GROUP,
+    /**
+     * Do not wait; the background flusher fsyncs every window, so a crash can lose that window
+     */
+    ASYNC
+}
@@ -0,0 +1,237 @@
+package com.learning.java.spark.rest_api_demo.service.persistence;
+
+import com.learning.java.spark.rest_api_demo.model.Reservation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of stock reservations, so held stock survives a restart
+ * <p>
+ * Records use the write-ahead log framing, [int payload length][int CRC32 of payload][payload],
+ * with a payload of [byte operation] followed by the whole reservation for HELD or its ID and
+ * final status for ENDED. Every record is forced to disk before the call returns; reservations
+ * change far less often than products, so there is no group commit.
+ * <p>
+ * Opening the journal replays it, drops a torn tail, and rewrites the file with only the
+ * reservations still held, so it never grows much beyond the set of open holds.
+ * <p>
+ * Configured with products.reservations.path; when unset it sits next to the write-ahead log
+ * (products.wal.path + ".reservations") or in the snapshot directory, and is disabled when
+ * the catalog itself is not persisted.
+ */
+public class ReservationJournal implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ReservationJournal.class);
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+    private static final byte OP_HELD = 1;
+    private static final byte OP_ENDED = 2;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final List<Reservation> held;
+
+    private ReservationJournal(Path file, FileChannel channel, List<Reservation> held) {
+        this.file = file;
+        this.channel = channel;
+        this.held = held;
+    }
+
+    /**
+     * Journal path from system properties, or null when reservations are not persisted
+     */
+    public static Path pathFromSystemProperties() {
+        String path = System.getProperty("products.reservations.path");
+        if (path != null && !path.isEmpty()) {
+            return Path.of(path);
+        }
+        String walPath = System.getProperty("products.wal.path");
+        if (walPath != null && !walPath.isEmpty()) {
+            return Path.of(walPath + ".reservations");
+        }
+        String snapshotDirectory = System.getProperty("products.snapshot.dir");
+        if (snapshotDirectory != null && !snapshotDirectory.isEmpty()) {
+            return Path.of(snapshotDirectory, "reservations.journal");
+        }
+        return null;
+    }
+
+    /**
+     * Open a journal, recovering the reservations that were still held when it was last written
+     */
+    public static ReservationJournal open(Path file) throws IOException {
+        Map<String, Reservation> held = new LinkedHashMap<>();
+        if (Files.exists(file)) {
+            try (FileChannel existing = FileChannel.open(file, StandardOpenOption.READ)) {
+                replay(existing, held);
+            }
+        }
+
+        // Rewrite with only the open holds, then append from there
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                for (Reservation reservation : held.values()) {
+                    write(out, held(reservation));
+                }
+                out.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (!held.isEmpty()) {
+            log.info("Recovered {} held reservations from {}", held.size(), file);
+        }
+        return new ReservationJournal(file, channel, List.copyOf(held.values()));
+    }
+
+    /**
+     * Reservations that were still held when the journal was opened
+     */
+    public List<Reservation> held() {
+        return held;
+    }
+
+    /**
+     * Durably record a new hold
+     */
+    public synchronized void recordHeld(Reservation reservation) {
+        append(held(reservation));
+    }
+
+    /**
+     * Durably record that a hold ended with the reservation's status
+     */
+    public synchronized void recordEnded(Reservation reservation) {
+        append(ended(reservation));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void append(byte[] framed) {
+        try {
+            write(channel, framed);
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the reservation journal " + file, e);
+        }
+    }
+
+    private static void write(FileChannel channel, byte[] framed) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(framed);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private static byte[] held(Reservation reservation) {
+        return frame(out -> {
+            out.writeByte(OP_HELD);
+            out.writeUTF(reservation.id());
+            out.writeUTF(reservation.productId());
+            out.writeInt(reservation.quantity());
+            out.writeLong(reservation.expiresAt().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(reservation.expiresAt().getNano());
+        });
+    }
+
+    private static byte[] ended(Reservation reservation) {
+        return frame(out -> {
+            out.writeByte(OP_ENDED);
+            out.writeUTF(reservation.id());
+            out.writeByte(reservation.status().ordinal());
+        });
+    }
+
+    private static byte[] frame(PayloadWriter payload) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeInt(0);
+            payload.write(out);
+
+            byte[] framed = bytes.toByteArray();
+            int payloadLength = framed.length - HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            crc.update(framed, HEADER_SIZE, payloadLength);
+            ByteBuffer.wrap(framed).putInt(payloadLength).putInt((int) crc.getValue());
+            return framed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void replay(FileChannel channel, Map<String, Reservation> held) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        CRC32 crc = new CRC32();
+        while (true) {
+            byte[] payload;
+            try {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+            byte operation = record.readByte();
+            switch (operation) {
+                case OP_HELD -> {
+                    String id = record.readUTF();
+                    String productId = record.readUTF();
+                    int quantity = record.readInt();
+                    LocalDateTime expiresAt = LocalDateTime.ofEpochSecond(record.readLong(), record.readInt(), ZoneOffset.UTC);
+                    held.put(id, new Reservation(id, productId, quantity, Reservation.Status.HELD, expiresAt));
+                }
+                case OP_ENDED -> held.remove(record.readUTF());
+                default -> throw new IOException("Unknown reservation journal operation " + operation);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,26 @@
+package com.learning.java.spark.rest_api_demo.service.persistence;
+
+import java.nio.file.Path;
+
+/**
+ * Snapshot configuration
+ * <ul>
+ *     <li>products.snapshot.dir - directory holding snapshots; snapshots are disabled when unset</li>
+ *     <li>products.snapshot.intervalSeconds - time between periodic snapshots (default 300)</li>
+ * </ul>
+ */
+public record SnapshotSettings(Path directory, long intervalSeconds) {
+    static final long DEFAULT_INTERVAL_SECONDS = 300;
+
+    /**
+     * Read the settings from system properties, or null when no snapshot directory is configured
+     */
+    public static SnapshotSettings fromSystemProperties() {
+        String directory = System.getProperty("products.snapshot.dir");
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+        return new SnapshotSettings(Path.of(directory),
+                Long.getLong("products.snapshot.intervalSeconds", DEFAULT_INTERVAL_SECONDS));
+    }
+}
@@ -0,0 +1,317 @@
+package com.learning.java.spark.rest_api_demo.service.persistence;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Point-in-time binary snapshots of the catalog
+ * <p>
+ * File layout, all big-endian:
+ * <pre>
+ * header:  int magic, int version, long write-ahead log position
+ * records: [int length][ProductCodec bytes], grouped into chunks of CHUNK_SIZE records
+ * footer:  long record count, int chunk count, long[] chunk offsets, int[] chunk CRC32s,
+ *          long footer offset, int magic
+ * </pre>
+ * The chunk table lets a restart map the file and decode chunks on all cores at once.
+ * Snapshots are written to a temporary file and moved into place, so a crash never leaves
+ * a partial snapshot behind under the final name. Every chunk is checked against its CRC
+ * before any product is handed out, and a snapshot that fails the check is skipped in
+ * favour of the one before it. Version 1 files have no CRCs and are loaded unchecked.
+ */
+public class SnapshotStore {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+    private static final int MAGIC = 0x50534E50; // "PSNP"
+    private static final int VERSION = 2;
+    private static final int UNCHECKED_VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int SNAPSHOTS_KEPT = 2;
+    private static final String PREFIX = "products-";
+    private static final String SUFFIX = ".snapshot";
+
+    private final Path directory;
+
+    public SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * What a loaded snapshot contained
+     *
+     * @param walPosition write-ahead log position to resume replay from
+     * @param count       number of products restored
+     * @param maxId       highest product ID restored, 0 if none
+     */
+    public record SnapshotInfo(long walPosition, long count, long maxId) {
+    }
+
+    /**
+     * Write a snapshot of the given products
+     * The products are read while writers keep going; each product is captured whole,
+     * and replaying the log from walPosition brings a restored catalog fully up to date.
+     */
+    public Path write(Iterable<Product> products, long walPosition) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, PREFIX, ".tmp");
+        try {
+            long count = 0;
+            long offset = HEADER_SIZE;
+            List<Long> chunkOffsets = new ArrayList<>();
+            List<Integer> chunkCrcs = new ArrayList<>();
+            CRC32 crc = new CRC32();
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 DataOutputStream out = new DataOutputStream(
+                         new CheckedOutputStream(new BufferedOutputStream(file, 256 * 1024), crc))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(walPosition);
+
+                ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+                DataOutputStream recordOut = new DataOutputStream(record);
+                for (Product product : products) {
+                    if (count % CHUNK_SIZE == 0) {
+                        if (count > 0) {
+                            chunkCrcs.add((int) crc.getValue());
+                        }
+                        chunkOffsets.add(offset);
+                        crc.reset();
+                    }
+                    record.reset();
+                    ProductCodec.write(recordOut, product);
+                    out.writeInt(record.size());
+                    record.writeTo(out);
+                    offset += Integer.BYTES + record.size();
+                    count++;
+                }
+
+                if (count > 0) {
+                    chunkCrcs.add((int) crc.getValue());
+                }
+
+                long footerOffset = offset;
+                out.writeLong(count);
+                out.writeInt(chunkOffsets.size());
+                for (long chunkOffset : chunkOffsets) {
+                    out.writeLong(chunkOffset);
+                }
+                for (int chunkCrc : chunkCrcs) {
+                    out.writeInt(chunkCrc);
+                }
+                out.writeLong(footerOffset);
+                out.writeInt(MAGIC);
+                out.flush();
+                file.getFD().sync();
+            }
+
+            Path target = directory.resolve(PREFIX + String.format("%020d", System.currentTimeMillis()) + SUFFIX);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote snapshot of {} products to {}", count, target);
+            deleteOldSnapshots();
+            return target;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Load the newest intact snapshot, handing each product to the consumer from several threads at once
+     * The consumer must be thread-safe. A snapshot that is damaged is reported and the one
+     * before it is tried, so the consumer only ever sees products of one snapshot.
+     */
+    public Optional<SnapshotInfo> loadLatest(Consumer<Product> consumer) throws IOException {
+        List<Path> snapshots = listSnapshots();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path file = snapshots.get(i);
+            long started = System.nanoTime();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                Layout layout;
+                try {
+                    layout = Layout.read(channel);
+                    layout.verify(channel);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Skipping damaged snapshot {}: {}", file, e.getMessage());
+                    continue;
+                }
+                long maxId = decode(channel, layout, consumer);
+                log.info("Loaded {} products from snapshot {} in {} ms",
+                        layout.count, file, (System.nanoTime() - started) / 1_000_000);
+                return Optional.of(new SnapshotInfo(layout.walPosition, layout.count, maxId));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Write-ahead log position the oldest retained snapshot resumes from
+     * The log before it is no longer needed, even if the newer snapshots turn out to be damaged.
+     *
+     * @return the position, or empty when there is no readable snapshot
+     */
+    public OptionalLong retainedWalPosition() throws IOException {
+        OptionalLong oldest = OptionalLong.empty();
+        for (Path file : listSnapshots()) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long walPosition = Layout.read(channel).walPosition;
+                if (oldest.isEmpty() || walPosition < oldest.getAsLong()) {
+                    oldest = OptionalLong.of(walPosition);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Cannot read snapshot {}: {}", file, e.getMessage());
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Map and decode each chunk on its own, so files larger than 2 GB load too, and return the highest ID
+     */
+    private static long decode(FileChannel channel, Layout layout, Consumer<Product> consumer) throws IOException {
+        AtomicLong maxId = new AtomicLong();
+        try {
+            IntStream.range(0, layout.chunkOffsets.length).parallel().forEach(chunk -> {
+                long chunkMaxId = 0;
+                MappedByteBuffer buffer = layout.mapChunk(channel, chunk);
+                while (buffer.hasRemaining()) {
+                    int length = buffer.getInt();
+                    int next = buffer.position() + length;
+                    Product product = ProductCodec.read(buffer);
+                    buffer.position(next);
+                    chunkMaxId = Math.max(chunkMaxId, Long.parseLong(product.getId()));
+                    consumer.accept(product);
+                }
+                maxId.accumulateAndGet(chunkMaxId, Math::max);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return maxId.get();
+    }
+
+    /**
+     * Header and footer of a snapshot file
+     */
+    private record Layout(long walPosition, long count, long[] chunkOffsets, int[] chunkCrcs, long footerOffset) {
+
+        static Layout read(FileChannel channel) throws IOException {
+            long size = channel.size();
+            int trailer = Long.BYTES + Integer.BYTES;
+            if (size < HEADER_SIZE + Long.BYTES + Integer.BYTES + trailer) {
+                throw new IOException("file is too short");
+            }
+            ByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, size - trailer, trailer);
+            long footerOffset = tail.getLong();
+            if (tail.getInt() != MAGIC) {
+                throw new IOException("not a product snapshot");
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            int version = header.getInt() == MAGIC ? header.getInt() : -1;
+            if (version != VERSION && version != UNCHECKED_VERSION) {
+                throw new IOException("unsupported snapshot version " + version);
+            }
+            long walPosition = header.getLong();
+
+            if (footerOffset < HEADER_SIZE || footerOffset > size - trailer) {
+                throw new IOException("footer offset " + footerOffset + " is out of range");
+            }
+            ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, footerOffset, size - trailer - footerOffset);
+            long count = footer.getLong();
+            int chunks = footer.getInt();
+            int crcBytes = version == VERSION ? Integer.BYTES : 0;
+            if (chunks < 0 || footer.remaining() != (long) chunks * (Long.BYTES + crcBytes)) {
+                throw new IOException("chunk table does not match the footer size");
+            }
+            long[] chunkOffsets = new long[chunks];
+            for (int i = 0; i < chunks; i++) {
+                chunkOffsets[i] = footer.getLong();
+                long previous = i == 0 ? HEADER_SIZE - 1 : chunkOffsets[i - 1];
+                if (chunkOffsets[i] <= previous || chunkOffsets[i] >= footerOffset) {
+                    throw new IOException("chunk " + i + " offset is out of range");
+                }
+            }
+            int[] chunkCrcs = null;
+            if (version == VERSION) {
+                chunkCrcs = new int[chunks];
+                for (int i = 0; i < chunks; i++) {
+                    chunkCrcs[i] = footer.getInt();
+                }
+            }
+            return new Layout(walPosition, count, chunkOffsets, chunkCrcs, footerOffset);
+        }
+
+        /**
+         * Check every chunk against its CRC, on all cores
+         */
+        void verify(FileChannel channel) throws IOException {
+            if (chunkCrcs == null) {
+                return;
+            }
+            try {
+                IntStream.range(0, chunkOffsets.length).parallel().forEach(chunk -> {
+                    CRC32 crc = new CRC32();
+                    crc.update(mapChunk(channel, chunk));
+                    if ((int) crc.getValue() != chunkCrcs[chunk]) {
+                        throw new UncheckedIOException(new IOException("chunk " + chunk + " fails its CRC check"));
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        MappedByteBuffer mapChunk(FileChannel channel, int chunk) {
+            long start = chunkOffsets[chunk];
+            long end = chunk + 1 < chunkOffsets.length ? chunkOffsets[chunk + 1] : footerOffset;
+            try {
+                return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private List<Path> listSnapshots() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    private void deleteOldSnapshots() throws IOException {
+        List<Path> snapshots = listSnapshots();
+        for (int i = 0; i < snapshots.size() - SNAPSHOTS_KEPT; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+    }
+}
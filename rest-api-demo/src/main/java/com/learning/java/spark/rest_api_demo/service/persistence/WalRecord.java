@@ -0,0 +1,25 @@
+package com.learning.java.spark.rest_api_demo.service.persistence;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+
+/**
+ * One entry of the write-ahead log
+ *
+ * @param operation PUT for creates and updates (full product state), DELETE for deletes
+ * @param id        product ID
+ * @param product   product state after the write, null for DELETE
+ */
+public record WalRecord(Operation operation, long id, Product product) {
+
+    public enum Operation {
+        PUT, DELETE
+    }
+
+    public static WalRecord put(Product product) {
+        return new WalRecord(Operation.PUT, Long.parseLong(product.getId()), product);
+    }
+
+    public static WalRecord delete(long id) {
+        return new WalRecord(Operation.DELETE, id, null);
+    }
+}
@@ -0,0 +1,30 @@
+package com.learning.java.spark.rest_api_demo.service.persistence;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Write-ahead log configuration
+ * <ul>
+ *     <li>products.wal.path - log file; the log is disabled when unset</li>
+ *     <li>products.wal.durability - "sync", "group" (default) or "async"</li>
+ *     <li>products.wal.groupCommitMillis - flusher window for group and async modes (default 2)</li>
+ * </ul>
+ */
+public record WalSettings(Path path, DurabilityMode durability, long groupCommitMillis) {
+    static final long DEFAULT_GROUP_COMMIT_MILLIS = 2;
+
+    /**
+     * Read the settings from system properties, or null when no log path is configured
+     */
+    public static WalSettings fromSystemProperties() {
+        String path = System.getProperty("products.wal.path");
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        DurabilityMode durability = DurabilityMode.valueOf(
+                System.getProperty("products.wal.durability", "group").toUpperCase(Locale.ROOT));
+        long window = Long.getLong("products.wal.groupCommitMillis", DEFAULT_GROUP_COMMIT_MILLIS);
+        return new WalSettings(Path.of(path), durability, window);
+    }
+}
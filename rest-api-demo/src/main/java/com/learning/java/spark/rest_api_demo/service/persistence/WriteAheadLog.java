@@ -0,0 +1,513 @@
+package com.learning.java.spark.rest_api_demo.service.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of product writes with group commit
+ * <p>
+ * Each record is framed as [int payload length][int CRC32 of payload][payload], where the
+ * payload is [byte operation] followed by the ProductCodec encoding for PUT or the long ID for DELETE.
+ * <p>
+ * Request threads only copy their record into an in-memory buffer ({@link #append}), which is
+ * cheap enough to do while holding a per-product lock and keeps records for one product in
+ * write order. They then wait in {@link #awaitDurable} according to the durability mode.
+ * A single write plus fsync covers every record buffered at that moment, so concurrent
+ * writers share one fsync instead of paying for their own.
+ * <p>
+ * The log is a chain of segment files. Positions count bytes from the start of the first
+ * segment ever written, and each segment is named after the position it starts at: settings.path()
+ * for position 0, settings.path() + "." + start after that. {@link #rotate} starts a new segment
+ * when a snapshot is taken, and {@link #dropBefore} deletes the segments no snapshot needs any more.
+ * <p>
+ * A failed write or fsync fails the log for good: later appends are refused and waiting writers
+ * get the error, since the records of the failed batch may or may not have reached the disk.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    private final Path file;
+    private final SegmentOpener opener;
+    private final DurabilityMode durability;
+    private final long groupCommitNanos;
+
+    // Records appended but not yet written; guarded by bufferLock
+    private final Object bufferLock = new Object();
+    private RecordBuffer pending = new RecordBuffer();
+    private long appendedPosition;
+
+    // Only one thread writes and fsyncs at a time; spare and the current segment are guarded by flushLock
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private RecordBuffer spare = new RecordBuffer();
+    private FileChannel channel;
+    private long segmentStart;
+    private final Object durableMonitor = new Object();
+    private volatile long durablePosition;
+    private volatile IOException failure;
+
+    private volatile boolean closed;
+    private final Thread flusher;
+
+    private WriteAheadLog(Path file, SegmentOpener opener, FileChannel channel, long segmentStart, long position,
+                          DurabilityMode durability, long groupCommitMillis) {
+        this.file = file;
+        this.opener = opener;
+        this.channel = channel;
+        this.segmentStart = segmentStart;
+        this.durability = durability;
+        this.groupCommitNanos = TimeUnit.MILLISECONDS.toNanos(groupCommitMillis);
+        this.appendedPosition = position;
+        this.durablePosition = position;
+
+        if (durability == DurabilityMode.SYNC) {
+            this.flusher = null;
+        } else {
+            this.flusher = new Thread(this::runFlusher, "wal-flusher");
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        }
+    }
+
+    /**
+     * Open a log, replaying its records from the given position before any new append
+     * A torn or corrupt tail left by a crash is reported and truncated.
+     */
+    public static WriteAheadLog open(WalSettings settings, long fromPosition, Consumer<WalRecord> replay) throws IOException {
+        return open(settings, fromPosition, replay, segment -> FileChannel.open(segment,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Open a log whose segment files are opened for reading and writing by the given opener
+     */
+    static WriteAheadLog open(WalSettings settings, long fromPosition, Consumer<WalRecord> replay,
+                              SegmentOpener opener) throws IOException {
+        Path file = settings.path();
+        List<Segment> segments = segments(file);
+        if (segments.isEmpty()) {
+            segments = List.of(new Segment(0, file));
+        }
+        if (fromPosition < segments.get(0).start()) {
+            log.warn("Write-ahead log {} starts at position {}, after position {}; the writes in between are lost",
+                    file, segments.get(0).start(), fromPosition);
+        }
+
+        int[] replayed = {0};
+        Consumer<WalRecord> counting = record -> {
+            replayed[0]++;
+            replay.accept(record);
+        };
+        int first = 0;
+        while (first + 1 < segments.size() && segments.get(first + 1).start() <= fromPosition) {
+            first++;
+        }
+        for (int i = first; ; i++) {
+            Segment segment = segments.get(i);
+            FileChannel channel = opener.open(segment.path());
+            try {
+                long size = channel.size();
+                long end = replay(channel, Math.min(Math.max(fromPosition - segment.start(), 0), size), counting);
+                if (end < size) {
+                    log.warn("Truncating {} bytes of incomplete records at the end of {}", size - end, segment.path());
+                    channel.truncate(end);
+                    channel.force(true);
+                }
+                boolean last = i + 1 == segments.size();
+                if (!last && segment.start() + end != segments.get(i + 1).start()) {
+                    // Later segments no longer line up with this one, so nothing after it can be replayed
+                    for (Segment later : segments.subList(i + 1, segments.size())) {
+                        log.warn("Dropping write-ahead log segment {} after an incomplete one", later.path());
+                        Files.deleteIfExists(later.path());
+                    }
+                    last = true;
+                }
+                if (last) {
+                    if (replayed[0] > 0) {
+                        log.info("Replayed {} write-ahead log records", replayed[0]);
+                    }
+                    channel.position(end);
+                    return new WriteAheadLog(file, opener, channel, segment.start(), segment.start() + end,
+                            settings.durability(), settings.groupCommitMillis());
+                }
+                channel.close();
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Open a log, replaying it from the beginning
+     */
+    public static WriteAheadLog open(WalSettings settings, Consumer<WalRecord> replay) throws IOException {
+        return open(settings, 0, replay);
+    }
+
+    /**
+     * Buffer a record and return the log position just past it
+     * Pass the position to {@link #awaitDurable} once any locks are released.
+     */
+    public long append(WalRecord record) {
+        byte[] framed = frame(record);
+        synchronized (bufferLock) {
+            if (closed) {
+                throw new IllegalStateException("Write-ahead log is closed: " + file);
+            }
+            checkFailure();
+            boolean wasEmpty = pending.size() == 0;
+            pending.write(framed, 0, framed.length);
+            appendedPosition += framed.length;
+            if (wasEmpty && flusher != null) {
+                bufferLock.notifyAll();
+            }
+            return appendedPosition;
+        }
+    }
+
+    /**
+     * Wait, as the durability mode requires, until everything up to the position is on disk
+     */
+    public void awaitDurable(long position) {
+        switch (durability) {
+            case SYNC -> {
+                // One flush covers every record appended before it started, ours included
+                if (durablePosition < position) {
+                    flush();
+                }
+                if (durablePosition < position) {
+                    checkFailure();
+                    throw new IllegalStateException("Write-ahead log " + file + " did not reach position " + position);
+                }
+            }
+            case GROUP -> {
+                synchronized (durableMonitor) {
+                    while (durablePosition < position) {
+                        checkFailure();
+                        try {
+                            durableMonitor.wait(100);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException("Interrupted while waiting for the write-ahead log", e);
+                        }
+                    }
+                }
+            }
+            case ASYNC -> {
+                // the flusher catches up on its own
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Position just past the last appended record
+     */
+    public long position() {
+        synchronized (bufferLock) {
+            return appendedPosition;
+        }
+    }
+
+    /**
+     * Start a new segment and return the log position it begins at
+     * Everything logged before that position is in earlier segments, which {@link #dropBefore}
+     * can delete once a snapshot covers it. Nothing changes when the current segment is empty.
+     */
+    public long rotate() {
+        flushLock.lock();
+        try {
+            flush();
+            // Holding flushLock, everything up to durablePosition is in the current segment and nothing after it
+            long start = durablePosition;
+            if (start == segmentStart) {
+                return start;
+            }
+            FileChannel next = opener.open(segmentPath(file, start));
+            FileChannel previous = channel;
+            channel = next;
+            segmentStart = start;
+            previous.close();
+            return start;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start a new write-ahead log segment after " + file, e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Delete the segments that end at or before a position, never the current one
+     */
+    public void dropBefore(long position) {
+        flushLock.lock();
+        try {
+            List<Segment> segments = segments(file);
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                Segment segment = segments.get(i);
+                if (segments.get(i + 1).start() > position || segment.start() >= segmentStart) {
+                    break;
+                }
+                Files.deleteIfExists(segment.path());
+                log.info("Deleted write-ahead log segment {}", segment.path());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete old write-ahead log segments of " + file, e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Write and fsync everything buffered so far
+     */
+    public void flush() {
+        flushLock.lock();
+        RecordBuffer batch = null;
+        try {
+            checkFailure();
+            long upTo;
+            synchronized (bufferLock) {
+                if (pending.size() == 0) {
+                    return;
+                }
+                batch = pending;
+                pending = spare;
+                upTo = appendedPosition;
+            }
+
+            ByteBuffer bytes = batch.asByteBuffer();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+
+            durablePosition = upTo;
+            synchronized (durableMonitor) {
+                durableMonitor.notifyAll();
+            }
+        } catch (IOException e) {
+            failure = e;
+            synchronized (durableMonitor) {
+                durableMonitor.notifyAll();
+            }
+            throw new UncheckedIOException("Failed to write the write-ahead log " + file, e);
+        } finally {
+            // The written (or abandoned) batch becomes the spare again, so pending never shares it
+            if (batch != null) {
+                batch.reset();
+                spare = batch;
+            }
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (bufferLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            bufferLock.notifyAll();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushLock.lock();
+        try {
+            flush();
+        } finally {
+            channel.close();
+            flushLock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            synchronized (bufferLock) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        bufferLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            // Give concurrent writers a moment to join this batch
+            if (groupCommitNanos > 0) {
+                LockSupport.parkNanos(groupCommitNanos);
+            }
+            try {
+                flush();
+            } catch (UncheckedIOException e) {
+                log.error("Write-ahead log flush failed: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void checkFailure() {
+        IOException e = failure;
+        if (e != null) {
+            throw new UncheckedIOException("Write-ahead log " + file + " failed", e);
+        }
+    }
+
+    private static byte[] frame(WalRecord record) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeInt(0);
+            if (record.operation() == WalRecord.Operation.PUT) {
+                out.writeByte(OP_PUT);
+                ProductCodec.write(out, record.product());
+            } else {
+                out.writeByte(OP_DELETE);
+                out.writeLong(record.id());
+            }
+
+            byte[] framed = bytes.toByteArray();
+            int payloadLength = framed.length - HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            crc.update(framed, HEADER_SIZE, payloadLength);
+            ByteBuffer.wrap(framed).putInt(payloadLength).putInt((int) crc.getValue());
+            return framed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replay intact records from a position and return where the intact part ends
+     */
+    private static long replay(FileChannel channel, long from, Consumer<WalRecord> consumer) throws IOException {
+        channel.position(from);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024));
+        long position = from;
+        CRC32 crc = new CRC32();
+        while (true) {
+            byte[] payload;
+            try {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+
+            consumer.accept(decode(payload));
+            position += HEADER_SIZE + payload.length;
+        }
+        return position;
+    }
+
+    private static WalRecord decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte operation = in.readByte();
+        return switch (operation) {
+            case OP_PUT -> WalRecord.put(ProductCodec.read(in));
+            case OP_DELETE -> WalRecord.delete(in.readLong());
+            default -> throw new IOException("Unknown write-ahead log operation " + operation);
+        };
+    }
+
+    /**
+     * Segment files of a log, in position order
+     */
+    private static List<Segment> segments(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        String name = file.getFileName().toString();
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> {
+                        String fileName = path.getFileName().toString();
+                        if (fileName.equals(name)) {
+                            return new Segment(0, path);
+                        }
+                        String suffix = fileName.startsWith(name + ".") ? fileName.substring(name.length() + 1) : "";
+                        return suffix.length() == 20 && suffix.chars().allMatch(Character::isDigit)
+                                ? new Segment(Long.parseLong(suffix), path) : null;
+                    })
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparingLong(Segment::start))
+                    .toList();
+        }
+    }
+
+    private static Path segmentPath(Path file, long start) {
+        return start == 0 ? file : file.resolveSibling(file.getFileName() + "." + String.format("%020d", start));
+    }
+
+    private record Segment(long start, Path path) {
+    }
+
+    /**
+     * Opens a segment file for reading and writing, creating it if needed
+     */
+    @FunctionalInterface
+    interface SegmentOpener {
+        FileChannel open(Path segment) throws IOException;
+    }
+
+    /**
+     * Byte buffer that exposes its contents without copying
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(64 * 1024);
+        }
+
+        ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.learning.java.spark.rest_api_demo.service.store;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary encoding for category names
+ * Each distinct name is stored once and products keep a small int code instead of their own
+ * String. Codes are never reused, so a code read without a lock always decodes to the same name.
+ * The dictionary only grows; catalogs have few distinct categories.
+ */
+final class CategoryDictionary {
+    static final int NONE = -1;
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[16];
+    private int size;
+
+    int encode(String category) {
+        if (category == null) {
+            return NONE;
+        }
+        Integer code = codes.get(category);
+        return code != null ? code : add(category);
+    }
+
+    String decode(int code) {
+        return code == NONE ? null : names[code];
+    }
+
+    int size() {
+        return codes.size();
+    }
+
+    private synchronized int add(String category) {
+        Integer existing = codes.get(category);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = names;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = category;
+        // Publish the array before the code, so readers that see the code also see the name
+        names = current;
+        codes.put(category, size);
+        return size++;
+    }
+}
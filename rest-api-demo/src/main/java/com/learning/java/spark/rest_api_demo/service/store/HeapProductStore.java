@@ -0,0 +1,108 @@
+package com.learning.java.spark.rest_api_demo.service.store;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compact on-heap storage of the catalog, ordered by ID
+ * <p>
+ * A product is kept as one small immutable entry under its numeric ID: the category is a
+ * dictionary code, timestamps are epoch nanoseconds and the ID is only the map key. Reads
+ * return a fresh Product built from the entry, so callers can never change stored state.
+ */
+final class HeapProductStore implements ProductStore {
+    private final ConcurrentNavigableMap<Long, Stored> entries = new ConcurrentSkipListMap<>();
+    private final CategoryDictionary categories = new CategoryDictionary();
+    // ConcurrentSkipListMap.size() walks the whole map, so the count is kept alongside
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Everything about a product except its ID, in primitive form where possible
+     */
+    private record Stored(String name, String description, double price, int quantity, int category,
+                         long createdAt, long updatedAt, long version) {
+    }
+
+    @Override
+    public Product get(long id) {
+        Stored stored = entries.get(id);
+        return stored == null ? null : toProduct(id, stored);
+    }
+
+    @Override
+    public boolean contains(long id) {
+        return entries.containsKey(id);
+    }
+
+    @Override
+    public void put(Product product) {
+        Stored stored = new Stored(product.getName(), product.getDescription(), product.getPrice(),
+                product.getQuantity(), categories.encode(product.getCategory()),
+                toEpochNanos(product.getCreatedAt()), toEpochNanos(product.getUpdatedAt()), product.getVersion());
+        if (entries.put(Long.parseLong(product.getId()), stored) == null) {
+            size.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void remove(long id) {
+        if (entries.remove(id) != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public Iterator<Product> ascendingFrom(long afterId) {
+        Iterator<Map.Entry<Long, Stored>> iterator = entries.tailMap(afterId, false).entrySet().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Product next() {
+                Map.Entry<Long, Stored> next = iterator.next();
+                return toProduct(next.getKey(), next.getValue());
+            }
+        };
+    }
+
+    private Product toProduct(long id, Stored stored) {
+        Product product = new Product(Long.toString(id), stored.name(), stored.description(), stored.price(),
+                stored.quantity(), categories.decode(stored.category()), fromEpochNanos(stored.createdAt()),
+                fromEpochNanos(stored.updatedAt()));
+        product.setVersion(stored.version());
+        return product;
+    }
+
+    /**
+     * Timestamps are held as nanoseconds since the epoch in UTC, which keeps full precision until 2262
+     */
+    static long toEpochNanos(LocalDateTime value) {
+        if (value == null) {
+            return Long.MIN_VALUE;
+        }
+        return Math.addExact(Math.multiplyExact(value.toEpochSecond(ZoneOffset.UTC), 1_000_000_000L), value.getNano());
+    }
+
+    static LocalDateTime fromEpochNanos(long nanos) {
+        if (nanos == Long.MIN_VALUE) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,296 @@
+package com.learning.java.spark.rest_api_demo.service.store;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.learning.java.spark.rest_api_demo.service.store.HeapProductStore.fromEpochNanos;
+import static com.learning.java.spark.rest_api_demo.service.store.HeapProductStore.toEpochNanos;
+
+/**
+ * Columnar product storage in direct memory, so a large catalog adds almost nothing for the GC to trace
+ * <p>
+ * Product IDs are dense numbers handed out by the ID generator, so the ID itself is the row
+ * number: rows live in chunks of 16384, each chunk one direct buffer holding a column per field
+ * (price, quantity, category code, timestamps, version, string addresses). Chunks are allocated
+ * when the first ID in their range is stored and never move, which also makes ascending-ID
+ * scans a walk over the presence column. Names and descriptions go to a {@link StringArena};
+ * a write keeps the row's strings when their bytes are unchanged and frees them otherwise.
+ * <p>
+ * Each row has a sequence number that a writer makes odd while it changes the row and even
+ * again afterwards. Readers copy the row and retry if the sequence moved, so they never block
+ * and never see half a write.
+ */
+final class OffHeapProductStore implements ProductStore {
+    static final int CHUNK_BITS = 14;
+    static final int CHUNK_ROWS = 1 << CHUNK_BITS;
+    static final long MAX_ID = 1L << 40;
+
+    // Column offsets within a chunk; 8-byte columns first so every column stays aligned
+    private static final int PRICE = 0;
+    private static final int CREATED_AT = 8 * CHUNK_ROWS;
+    private static final int UPDATED_AT = 16 * CHUNK_ROWS;
+    private static final int VERSION = 24 * CHUNK_ROWS;
+    private static final int NAME_ADDRESS = 32 * CHUNK_ROWS;
+    private static final int DESCRIPTION_ADDRESS = 40 * CHUNK_ROWS;
+    private static final int QUANTITY = 48 * CHUNK_ROWS;
+    private static final int CATEGORY = 52 * CHUNK_ROWS;
+    private static final int NAME_LENGTH = 56 * CHUNK_ROWS;
+    private static final int DESCRIPTION_LENGTH = 60 * CHUNK_ROWS;
+    private static final int SEQUENCE = 64 * CHUNK_ROWS;
+    private static final int PRESENT = 68 * CHUNK_ROWS;
+    private static final int CHUNK_BYTES = 69 * CHUNK_ROWS;
+    private static final int NULL_STRING = -1;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[16];
+    private final StringArena strings = new StringArena();
+    private final CategoryDictionary categories = new CategoryDictionary();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong maxId = new AtomicLong();
+
+    @Override
+    public Product get(long id) {
+        ByteBuffer chunk = chunk(id);
+        if (chunk == null) {
+            return null;
+        }
+        int row = (int) (id & (CHUNK_ROWS - 1));
+        int sequenceIndex = SEQUENCE + row * 4;
+        while (true) {
+            int sequence = (int) INT.getAcquire(chunk, sequenceIndex);
+            if ((sequence & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            boolean present = chunk.get(PRESENT + row) != 0;
+            double price = Double.longBitsToDouble(chunk.getLong(PRICE + row * 8));
+            long createdAt = chunk.getLong(CREATED_AT + row * 8);
+            long updatedAt = chunk.getLong(UPDATED_AT + row * 8);
+            long version = chunk.getLong(VERSION + row * 8);
+            long nameAddress = chunk.getLong(NAME_ADDRESS + row * 8);
+            long descriptionAddress = chunk.getLong(DESCRIPTION_ADDRESS + row * 8);
+            int quantity = chunk.getInt(QUANTITY + row * 4);
+            int category = chunk.getInt(CATEGORY + row * 4);
+            int nameLength = chunk.getInt(NAME_LENGTH + row * 4);
+            int descriptionLength = chunk.getInt(DESCRIPTION_LENGTH + row * 4);
+            // Freed string space is reused, so strings are read before the row is validated too
+            String name = present ? string(nameAddress, nameLength) : null;
+            String description = present ? string(descriptionAddress, descriptionLength) : null;
+            VarHandle.loadLoadFence();
+            if ((int) INT.getOpaque(chunk, sequenceIndex) != sequence) {
+                continue;
+            }
+            if (!present) {
+                return null;
+            }
+            Product product = new Product(Long.toString(id), name, description, price, quantity,
+                    categories.decode(category), fromEpochNanos(createdAt), fromEpochNanos(updatedAt));
+            product.setVersion(version);
+            return product;
+        }
+    }
+
+    @Override
+    public boolean contains(long id) {
+        ByteBuffer chunk = chunk(id);
+        return chunk != null && chunk.get(PRESENT + (int) (id & (CHUNK_ROWS - 1))) != 0;
+    }
+
+    @Override
+    public void put(Product product) {
+        long id = Long.parseLong(product.getId());
+        if (id < 0 || id >= MAX_ID) {
+            throw new IllegalArgumentException("Product id out of range for the off-heap store: " + id);
+        }
+        // Everything that allocates happens before the row is opened for writing
+        ByteBuffer chunk = chunkForWrite(id);
+        int row = (int) (id & (CHUNK_ROWS - 1));
+        // Only this writer changes the row, so its current values can be read without the sequence
+        boolean wasPresent = chunk.get(PRESENT + row) != 0;
+        long oldNameAddress = chunk.getLong(NAME_ADDRESS + row * 8);
+        long oldDescriptionAddress = chunk.getLong(DESCRIPTION_ADDRESS + row * 8);
+        int oldNameLength = chunk.getInt(NAME_LENGTH + row * 4);
+        int oldDescriptionLength = chunk.getInt(DESCRIPTION_LENGTH + row * 4);
+
+        byte[] name = utf8(product.getName());
+        byte[] description = utf8(product.getDescription());
+        boolean keepName = wasPresent && sameString(oldNameAddress, oldNameLength, name);
+        boolean keepDescription = wasPresent && sameString(oldDescriptionAddress, oldDescriptionLength, description);
+        long nameAddress = keepName ? oldNameAddress : write(name);
+        long descriptionAddress = keepDescription ? oldDescriptionAddress : write(description);
+        int nameLength = name == null ? NULL_STRING : name.length;
+        int descriptionLength = description == null ? NULL_STRING : description.length;
+        int category = categories.encode(product.getCategory());
+        long createdAt = toEpochNanos(product.getCreatedAt());
+        long updatedAt = toEpochNanos(product.getUpdatedAt());
+
+        int sequenceIndex = SEQUENCE + row * 4;
+        int sequence = (int) INT.get(chunk, sequenceIndex);
+        INT.setOpaque(chunk, sequenceIndex, sequence + 1);
+        VarHandle.storeStoreFence();
+        chunk.putLong(PRICE + row * 8, Double.doubleToRawLongBits(product.getPrice()));
+        chunk.putLong(CREATED_AT + row * 8, createdAt);
+        chunk.putLong(UPDATED_AT + row * 8, updatedAt);
+        chunk.putLong(VERSION + row * 8, product.getVersion());
+        chunk.putLong(NAME_ADDRESS + row * 8, nameAddress);
+        chunk.putLong(DESCRIPTION_ADDRESS + row * 8, descriptionAddress);
+        chunk.putInt(QUANTITY + row * 4, product.getQuantity());
+        chunk.putInt(CATEGORY + row * 4, category);
+        chunk.putInt(NAME_LENGTH + row * 4, nameLength);
+        chunk.putInt(DESCRIPTION_LENGTH + row * 4, descriptionLength);
+        chunk.put(PRESENT + row, (byte) 1);
+        INT.setRelease(chunk, sequenceIndex, sequence + 2);
+
+        if (!wasPresent) {
+            size.incrementAndGet();
+            maxId.accumulateAndGet(id, Math::max);
+        }
+        // Freed only once the row no longer points at them
+        if (wasPresent && !keepName) {
+            free(oldNameAddress, oldNameLength);
+        }
+        if (wasPresent && !keepDescription) {
+            free(oldDescriptionAddress, oldDescriptionLength);
+        }
+    }
+
+    @Override
+    public void remove(long id) {
+        ByteBuffer chunk = chunk(id);
+        if (chunk == null) {
+            return;
+        }
+        int row = (int) (id & (CHUNK_ROWS - 1));
+        if (chunk.get(PRESENT + row) == 0) {
+            return;
+        }
+        int sequenceIndex = SEQUENCE + row * 4;
+        int sequence = (int) INT.get(chunk, sequenceIndex);
+        INT.setOpaque(chunk, sequenceIndex, sequence + 1);
+        VarHandle.storeStoreFence();
+        chunk.put(PRESENT + row, (byte) 0);
+        INT.setRelease(chunk, sequenceIndex, sequence + 2);
+        size.decrementAndGet();
+        free(chunk.getLong(NAME_ADDRESS + row * 8), chunk.getInt(NAME_LENGTH + row * 4));
+        free(chunk.getLong(DESCRIPTION_ADDRESS + row * 8), chunk.getInt(DESCRIPTION_LENGTH + row * 4));
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public Iterator<Product> ascendingFrom(long afterId) {
+        return new Iterator<>() {
+            private long id = afterId;
+            private Product next;
+
+            @Override
+            public boolean hasNext() {
+                long last = maxId.get();
+                while (next == null && id < last) {
+                    id++;
+                    ByteBuffer chunk = chunk(id);
+                    if (chunk == null) {
+                        // Skip to the last ID of this empty chunk range
+                        id |= CHUNK_ROWS - 1;
+                        continue;
+                    }
+                    if (chunk.get(PRESENT + (int) (id & (CHUNK_ROWS - 1))) != 0) {
+                        next = get(id);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Product next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Product product = next;
+                next = null;
+                return product;
+            }
+        };
+    }
+
+    /**
+     * Direct memory held by row chunks and strings
+     */
+    long allocatedBytes() {
+        long rows = 0;
+        for (ByteBuffer chunk : chunks) {
+            if (chunk != null) {
+                rows += chunk.capacity();
+            }
+        }
+        return rows + strings.allocatedBytes();
+    }
+
+    /**
+     * String space freed by updates and removals and not yet reused
+     */
+    long freeStringBytes() {
+        return strings.freeBytes();
+    }
+
+    private ByteBuffer chunk(long id) {
+        long index = id >>> CHUNK_BITS;
+        ByteBuffer[] current = chunks;
+        return id < 0 || index >= current.length ? null : current[(int) index];
+    }
+
+    private ByteBuffer chunkForWrite(long id) {
+        ByteBuffer chunk = chunk(id);
+        return chunk != null ? chunk : allocateChunk((int) (id >>> CHUNK_BITS));
+    }
+
+    private synchronized ByteBuffer allocateChunk(int index) {
+        ByteBuffer[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        ByteBuffer[] grown = index < current.length ? current : Arrays.copyOf(current, Math.max(index + 1, current.length * 2));
+        grown[index] = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.nativeOrder());
+        chunks = grown;
+        return grown[index];
+    }
+
+    /**
+     * A stored string, or null when it is null or its address came from a torn read
+     */
+    private String string(long address, int length) {
+        return length == NULL_STRING || !strings.holds(address, length) ? null : strings.read(address, length);
+    }
+
+    private long write(byte[] utf8) {
+        return utf8 == null ? 0 : strings.write(utf8);
+    }
+
+    private void free(long address, int length) {
+        if (length != NULL_STRING) {
+            strings.free(address, length);
+        }
+    }
+
+    private boolean sameString(long address, int length, byte[] utf8) {
+        return utf8 == null ? length == NULL_STRING : length != NULL_STRING && strings.matches(address, length, utf8);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+}
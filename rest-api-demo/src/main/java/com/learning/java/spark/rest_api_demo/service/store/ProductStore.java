@@ -0,0 +1,36 @@
+package com.learning.java.spark.rest_api_demo.service.store;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+
+import java.util.Iterator;
+
+/**
+ * Storage engine behind ProductService, keyed and ordered by numeric product ID
+ * <p>
+ * ProductService never writes one ID from two threads at once, so implementations only need
+ * to make writes to different IDs safe against each other and reads safe against any write.
+ * Reads return a new Product each time; changing it does not change the store.
+ */
+public interface ProductStore {
+
+    /**
+     * Product stored under an ID, or null
+     */
+    Product get(long id);
+
+    boolean contains(long id);
+
+    /**
+     * Store a product under its ID, replacing any previous version
+     */
+    void put(Product product);
+
+    void remove(long id);
+
+    int size();
+
+    /**
+     * Products with an ID greater than afterId, in ascending ID order, read as they are iterated
+     */
+    Iterator<Product> ascendingFrom(long afterId);
+}
@@ -0,0 +1,34 @@
+package com.learning.java.spark.rest_api_demo.service.store;
+
+/**
+ * Factory for the configured product store
+ * <ul>
+ *     <li>products.store - "heap" (default) for compact objects on the Java heap, or "offheap" for
+ *     columns in direct memory, which keeps large catalogs out of the garbage collector's way</li>
+ * </ul>
+ */
+public final class ProductStores {
+
+    private ProductStores() {
+    }
+
+    public static ProductStore heap() {
+        return new HeapProductStore();
+    }
+
+    public static ProductStore offHeap() {
+        return new OffHeapProductStore();
+    }
+
+    /**
+     * Build the product store described by system properties
+     */
+    public static ProductStore fromSystemProperties() {
+        String store = System.getProperty("products.store", "heap");
+        return switch (store) {
+            case "heap" -> heap();
+            case "offheap" -> offHeap();
+            default -> throw new IllegalArgumentException("Unknown products.store: " + store);
+        };
+    }
+}
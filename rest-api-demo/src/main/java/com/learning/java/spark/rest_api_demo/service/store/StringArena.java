@@ -0,0 +1,140 @@
+package com.learning.java.spark.rest_api_demo.service.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Store for UTF-8 strings in direct memory
+ * <p>
+ * Strings are copied into 1 MB direct buffers and addressed by a long holding the buffer
+ * number and the offset within it. Each string takes whole 8-byte slots; when it is freed its
+ * space goes on a free list for its slot count and the next string of that size reuses it.
+ * Freed strings longer than 1 KB are not reused, only counted by {@link #freeBytes()}.
+ * Space is reserved and freed under a short lock and filled outside it. Readers take no lock,
+ * so a reader racing a free can see bytes of a later string and must check it still holds the
+ * address afterwards.
+ */
+final class StringArena {
+    static final int CHUNK_BYTES = 1 << 20;
+    static final int SLOT_BYTES = 8;
+    static final int MAX_REUSED_BYTES = 1024;
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[16];
+    private int current = -1;
+    private int position = CHUNK_BYTES;
+    private long allocatedBytes;
+    private long freeBytes;
+    // Free addresses per slot count, each list used as a stack
+    private final long[][] free = new long[MAX_REUSED_BYTES / SLOT_BYTES + 1][];
+    private final int[] freeCount = new int[free.length];
+
+    /**
+     * Copy a string into the arena and return its address
+     */
+    long write(byte[] utf8) {
+        if (utf8.length == 0) {
+            return 0;
+        }
+        long address = reserve(slots(utf8.length));
+        chunks[(int) (address >>> 32)].put((int) address, utf8);
+        return address;
+    }
+
+    String read(long address, int length) {
+        byte[] utf8 = new byte[length];
+        if (length > 0) {
+            chunks[(int) (address >>> 32)].get((int) address, utf8);
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Whether an address and length, possibly read from a torn row, lie inside the arena
+     */
+    boolean holds(long address, int length) {
+        if (length <= 0) {
+            return length == 0;
+        }
+        ByteBuffer[] current = chunks;
+        long chunk = address >>> 32;
+        int offset = (int) address;
+        return chunk < current.length && current[(int) chunk] != null && offset >= 0
+                && offset <= current[(int) chunk].capacity() - length;
+    }
+
+    /**
+     * Whether the string at an address has exactly these bytes
+     */
+    boolean matches(long address, int length, byte[] utf8) {
+        if (length != utf8.length) {
+            return false;
+        }
+        ByteBuffer chunk = chunks[(int) (address >>> 32)];
+        int offset = (int) address;
+        for (int i = 0; i < length; i++) {
+            if (chunk.get(offset + i) != utf8[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Give back the space of a string nothing refers to any more
+     */
+    synchronized void free(long address, int length) {
+        if (length == 0) {
+            return;
+        }
+        int slots = slots(length);
+        freeBytes += (long) slots * SLOT_BYTES;
+        if (slots >= free.length) {
+            return;
+        }
+        long[] addresses = free[slots];
+        if (addresses == null || freeCount[slots] == addresses.length) {
+            addresses = addresses == null ? new long[16] : Arrays.copyOf(addresses, addresses.length * 2);
+            free[slots] = addresses;
+        }
+        addresses[freeCount[slots]++] = address;
+    }
+
+    synchronized long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Bytes of freed strings not yet reused, including those too long to ever be reused
+     */
+    synchronized long freeBytes() {
+        return freeBytes;
+    }
+
+    private synchronized long reserve(int slots) {
+        if (slots < free.length && freeCount[slots] > 0) {
+            freeBytes -= (long) slots * SLOT_BYTES;
+            return free[slots][--freeCount[slots]];
+        }
+        int length = slots * SLOT_BYTES;
+        if (current < 0 || position + length > chunks[current].capacity()) {
+            // Strings larger than a chunk get a chunk of their own
+            ByteBuffer chunk = ByteBuffer.allocateDirect(Math.max(CHUNK_BYTES, length));
+            allocatedBytes += chunk.capacity();
+            ByteBuffer[] grown = chunks;
+            if (current + 1 == grown.length) {
+                grown = Arrays.copyOf(grown, grown.length * 2);
+            }
+            grown[++current] = chunk;
+            chunks = grown;
+            position = 0;
+        }
+        long address = ((long) current << 32) | position;
+        position += length;
+        return address;
+    }
+
+    private static int slots(int length) {
+        return (length + SLOT_BYTES - 1) / SLOT_BYTES;
+    }
+}
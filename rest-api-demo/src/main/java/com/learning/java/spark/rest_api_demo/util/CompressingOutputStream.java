@@ -0,0 +1,116 @@
+package com.learning.java.spark.rest_api_demo.util;
+
+import spark.Response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import java.util.zip.Deflater;
+
+/**
+ * Response stream that switches to compression once the body reaches the threshold
+ * Until then bytes are held back, so the Content-Encoding header can still be set.
+ * Closing finishes the body without closing the servlet stream.
+ */
+final class CompressingOutputStream extends OutputStream {
+    private final ResponseCompressor compressor;
+    private final Response res;
+    private final ContentEncoding encoding;
+    private final OutputStream target;
+
+    private byte[] pending;
+    private int pendingCount;
+    private Deflater deflater;
+    private Checksum checksum;
+    private byte[] deflateBuffer;
+    private long length;
+    private boolean closed;
+
+    CompressingOutputStream(ResponseCompressor compressor, Response res, ContentEncoding encoding, int threshold)
+            throws IOException {
+        this.compressor = compressor;
+        this.res = res;
+        this.encoding = encoding;
+        this.target = res.raw().getOutputStream();
+        this.pending = encoding == ContentEncoding.IDENTITY ? null : new byte[Math.max(threshold, 1)];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        length += len;
+        if (deflater != null) {
+            deflate(b, off, len);
+        } else if (pending == null) {
+            target.write(b, off, len);
+        } else if (pendingCount + len < pending.length) {
+            System.arraycopy(b, off, pending, pendingCount, len);
+            pendingCount += len;
+        } else {
+            startCompressing();
+            deflate(pending, 0, pendingCount);
+            pending = null;
+            deflate(b, off, len);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // Held-back bytes stay held back; flushing them would decide the coding too early
+        if (pending == null) {
+            target.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (pending != null) {
+            target.write(pending, 0, pendingCount);
+        } else if (deflater != null) {
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    drain();
+                }
+                ResponseCompressor.writeTrailer(target, encoding, (int) checksum.getValue(), (int) length);
+                compressor.record(length, deflater.getBytesWritten() + ResponseCompressor.framingBytes(encoding));
+            } finally {
+                deflater.end();
+            }
+        }
+        target.flush();
+    }
+
+    private void startCompressing() throws IOException {
+        res.header("Content-Encoding", encoding.token());
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        checksum = encoding == ContentEncoding.GZIP ? new CRC32() : new Adler32();
+        deflateBuffer = new byte[8192];
+        ResponseCompressor.writeHeader(target, encoding);
+    }
+
+    private void deflate(byte[] b, int off, int len) throws IOException {
+        checksum.update(b, off, len);
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        int count = deflater.deflate(deflateBuffer);
+        if (count > 0) {
+            target.write(deflateBuffer, 0, count);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.learning.java.spark.rest_api_demo.util;
+
+/**
+ * Helpers for strong entity tags and If-None-Match handling
+ * Tags carry a per-process prefix, because versions restart when the service restarts,
+ * and the negotiated content coding, because a gzip body is a different representation.
+ */
+public final class ETags {
+    private static final String INSTANCE = Long.toString(System.currentTimeMillis(), 36);
+
+    private ETags() {
+    }
+
+    /**
+     * Strong tag for one product representation
+     */
+    public static String forProduct(long version, boolean pretty, ContentEncoding encoding) {
+        return "\"" + INSTANCE + "-p" + version + (pretty ? "-pretty" : "") + suffix(encoding) + "\"";
+    }
+
+    /**
+     * Strong tag for a listing; the query string tells apart different listings at the same version
+     */
+    public static String forList(long version, String queryString, boolean pretty, ContentEncoding encoding) {
+        int queryHash = queryString == null ? 0 : queryString.hashCode();
+        return "\"" + INSTANCE + "-l" + version + "-" + Integer.toHexString(queryHash) + (pretty ? "-pretty" : "")
+                + suffix(encoding) + "\"";
+    }
+
+    /**
+     * Check an If-None-Match header value against a tag
+     * Uses weak comparison, as RFC 9110 requires for If-None-Match.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String suffix(ContentEncoding encoding) {
+        return encoding == ContentEncoding.IDENTITY ? "" : "-" + encoding.token();
+    }
+}
@@ -2,38 +2,108 @@ package com.learning.java.spark.rest_api_demo.util;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonWriter;
+import com.learning.java.spark.rest_api_demo.model.ApiError;
+import com.learning.java.spark.rest_api_demo.model.ErrorResponse;
+import com.learning.java.spark.rest_api_demo.model.HealthResponse;
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.model.ProductPatch;
+import spark.Request;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 /**
  * Utility class for JSON serialization/deserialization
+ * Output is compact by default; pretty printing is opt-in per call.
  */
 public class JsonUtil {
+    private static final int STREAM_BUFFER_SIZE = 8192;
     private static final Gson gson;
+    private static final Gson prettyGson;
 
     static {
-        // Configure Gson with custom adapters for LocalDateTime
-        gson = new GsonBuilder()
-                .registerTypeAdapter(LocalDateTime.class,
-                        (JsonSerializer<LocalDateTime>) (src, typeOfSrc, context) ->
-                                context.serialize(src.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)))
-                .registerTypeAdapter(LocalDateTime.class,
-                        (JsonDeserializer<LocalDateTime>) (json, typeOfT, context) ->
-                                LocalDateTime.parse(json.getAsString(), DateTimeFormatter.ISO_LOCAL_DATE_TIME))
-                .setPrettyPrinting()
-                .create();
+        // Streaming adapters for the types we send on every response, no reflection involved
+        GsonBuilder builder = new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, new TypeAdapters.LocalDateTimeAdapter().nullSafe())
+                .registerTypeAdapter(Product.class, new ProductTypeAdapter().nullSafe())
+                .registerTypeAdapter(ProductPatch.class, new ProductPatchTypeAdapter())
+                .registerTypeAdapter(ErrorResponse.class, new TypeAdapters.ErrorResponseAdapter().nullSafe())
+                .registerTypeAdapter(ApiError.class, new TypeAdapters.ApiErrorAdapter().nullSafe())
+                .registerTypeAdapter(HealthResponse.class, new TypeAdapters.HealthResponseAdapter().nullSafe());
+        gson = builder.create();
+        prettyGson = builder.setPrettyPrinting().create();
     }
 
     /**
-     * Convert object to JSON string
+     * Convert object to compact JSON string
      */
     public static String toJson(Object object) {
         return gson.toJson(object);
     }
 
+    /**
+     * Convert object to JSON string, pretty printed if requested
+     */
+    public static String toJson(Object object, boolean pretty) {
+        return (pretty ? prettyGson : gson).toJson(object);
+    }
+
+    /**
+     * Write a JSON array straight to an output stream, one element at a time
+     * Elements are serialized as they are iterated through a small buffer, so the
+     * whole document is never held in memory. The stream is flushed but not closed.
+     */
+    public static void writeJsonArray(Iterable<?> items, OutputStream out, boolean pretty) throws IOException {
+        Gson target = pretty ? prettyGson : gson;
+        JsonWriter writer = newJsonWriter(out, pretty);
+        writer.beginArray();
+        for (Object item : items) {
+            target.toJson(item, item.getClass(), writer);
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    /**
+     * Create a buffered streaming writer on top of an output stream, for responses built piece by piece
+     */
+    public static JsonWriter newJsonWriter(OutputStream out, boolean pretty) throws IOException {
+        return (pretty ? prettyGson : gson).newJsonWriter(
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), STREAM_BUFFER_SIZE));
+    }
+
+    /**
+     * Check whether the client asked for pretty printed JSON,
+     * either with ?pretty=true or with a media type parameter such as
+     * "Accept: application/json; pretty=true"
+     */
+    public static boolean isPrettyRequested(Request req) {
+        if ("true".equalsIgnoreCase(req.queryParams("pretty"))) {
+            return true;
+        }
+        String accept = req.headers("Accept");
+        if (accept == null) {
+            return false;
+        }
+        for (String mediaRange : accept.split(",")) {
+            String[] parts = mediaRange.split(";");
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.equalsIgnoreCase("pretty=true") || param.equalsIgnoreCase("pretty=\"true\"")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Convert JSON string to object
      */
@@ -41,6 +111,13 @@ public class JsonUtil {
         return gson.fromJson(json, classOfT);
     }
 
+    /**
+     * Convert UTF-8 JSON bytes to object, without first decoding them into a String
+     */
+    public static <T> T fromJson(byte[] json, Class<T> classOfT) {
+        return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), classOfT);
+    }
+
     /**
      * Get Gson instance for advanced usage
      */
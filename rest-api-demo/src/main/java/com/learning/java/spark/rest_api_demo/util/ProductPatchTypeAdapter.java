@@ -0,0 +1,96 @@
+package com.learning.java.spark.rest_api_demo.util;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.learning.java.spark.rest_api_demo.model.ProductPatch;
+
+import java.io.IOException;
+
+/**
+ * Streaming Gson adapter that reads a merge patch straight into the fields it names
+ * No intermediate Product or JSON tree is built. Read-only and unknown fields are rejected
+ * rather than skipped, so a typo does not silently turn into a no-op. Writing emits only the
+ * fields the patch names, with an explicit null for a cleared description or category.
+ */
+class ProductPatchTypeAdapter extends TypeAdapter<ProductPatch> {
+
+    @Override
+    public void write(JsonWriter out, ProductPatch patch) throws IOException {
+        if (patch == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (patch.has(ProductPatch.Field.NAME)) {
+            writeStringOrNull(out, "name", patch.getName());
+        }
+        if (patch.has(ProductPatch.Field.DESCRIPTION)) {
+            writeStringOrNull(out, "description", patch.getDescription());
+        }
+        if (patch.has(ProductPatch.Field.PRICE)) {
+            out.name("price").value(patch.getPrice());
+        }
+        if (patch.has(ProductPatch.Field.QUANTITY)) {
+            out.name("quantity").value(patch.getQuantity());
+        }
+        if (patch.has(ProductPatch.Field.CATEGORY)) {
+            writeStringOrNull(out, "category", patch.getCategory());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public ProductPatch read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ProductPatch patch = new ProductPatch();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+                case "name" -> patch.setName(nextStringOrNull(in));
+                case "description" -> patch.setDescription(nextStringOrNull(in));
+                case "category" -> patch.setCategory(nextStringOrNull(in));
+                case "price" -> patch.setPrice(notNull(in, name).nextDouble());
+                case "quantity" -> patch.setQuantity(notNull(in, name).nextInt());
+                default -> throw new IllegalArgumentException("Field cannot be patched: " + name);
+            }
+        }
+        in.endObject();
+        return patch;
+    }
+
+    /**
+     * Write a named value, keeping the name even for null: in a merge patch, null means "clear"
+     */
+    private static void writeStringOrNull(JsonWriter out, String name, String value) throws IOException {
+        out.name(name);
+        if (value != null) {
+            out.value(value);
+            return;
+        }
+        boolean serializeNulls = out.getSerializeNulls();
+        out.setSerializeNulls(true);
+        out.nullValue();
+        out.setSerializeNulls(serializeNulls);
+    }
+
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static JsonReader notNull(JsonReader in, String name) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            throw new IllegalArgumentException(name + " cannot be null");
+        }
+        return in;
+    }
+}
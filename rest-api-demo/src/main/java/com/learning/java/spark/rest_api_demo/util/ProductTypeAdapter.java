@@ -0,0 +1,78 @@
+package com.learning.java.spark.rest_api_demo.util;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.learning.java.spark.rest_api_demo.model.Product;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * Hand-written, reflection-free Gson adapter for Product
+ * Produces the same JSON shape as Gson's reflective adapter: null fields are omitted.
+ */
+class ProductTypeAdapter extends TypeAdapter<Product> {
+
+    @Override
+    public void write(JsonWriter out, Product product) throws IOException {
+        if (product == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        writeString(out, "id", product.getId());
+        writeString(out, "name", product.getName());
+        writeString(out, "description", product.getDescription());
+        out.name("price").value(product.getPrice());
+        out.name("quantity").value(product.getQuantity());
+        writeString(out, "category", product.getCategory());
+        writeTimestamp(out, "createdAt", product.getCreatedAt());
+        writeTimestamp(out, "updatedAt", product.getUpdatedAt());
+        out.endObject();
+    }
+
+    @Override
+    public Product read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Product product = new Product();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id" -> product.setId(in.nextString());
+                case "name" -> product.setName(in.nextString());
+                case "description" -> product.setDescription(in.nextString());
+                case "price" -> product.setPrice(in.nextDouble());
+                case "quantity" -> product.setQuantity(in.nextInt());
+                case "category" -> product.setCategory(in.nextString());
+                case "createdAt" -> product.setCreatedAt(LocalDateTime.parse(in.nextString()));
+                case "updatedAt" -> product.setUpdatedAt(LocalDateTime.parse(in.nextString()));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return product;
+    }
+
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    private static void writeTimestamp(JsonWriter out, String name, LocalDateTime value) throws IOException {
+        if (value != null) {
+            out.name(name);
+            TypeAdapters.writeLocalDateTime(out, value);
+        }
+    }
+}
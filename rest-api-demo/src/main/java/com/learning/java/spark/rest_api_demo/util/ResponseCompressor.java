@@ -0,0 +1,182 @@
+package com.learning.java.spark.rest_api_demo.util;
+
+import spark.Request;
+import spark.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses response bodies for clients that accept gzip or deflate
+ * <p>
+ * Bodies under the size threshold go out as they are, since compressing a small product
+ * costs more than it saves. Large bodies can be deflated once up front with
+ * {@link #precompress(byte[])} and kept in the response cache; one deflate stream serves
+ * both codings because gzip and zlib differ only in their header and trailer.
+ * <p>
+ * Compressed bytes are written straight to the servlet stream and flushed, which commits
+ * the response so Spark does not try to gzip it a second time.
+ */
+public class ResponseCompressor {
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0xda};
+
+    private final int minBytes;
+    private final LongAdder compressedResponses = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+
+    /**
+     * A body deflated ahead of time, with the checksums needed to frame it as gzip or zlib
+     */
+    public record Deflated(byte[] data, int crc32, int adler32, int length) {
+    }
+
+    /**
+     * Compression counters; ratio is uncompressed over compressed bytes
+     */
+    public record Stats(long compressedResponses, long uncompressedBytes, long compressedBytes, double ratio) {
+    }
+
+    /**
+     * @param minBytes smallest body that is compressed; negative disables compression
+     */
+    public ResponseCompressor(int minBytes) {
+        this.minBytes = minBytes;
+    }
+
+    /**
+     * Build the compressor described by system properties
+     * <ul>
+     *     <li>products.compression.minBytes - smallest compressed body (default 1024, negative disables)</li>
+     * </ul>
+     */
+    public static ResponseCompressor fromSystemProperties() {
+        return new ResponseCompressor(Integer.getInteger("products.compression.minBytes", 1024));
+    }
+
+    public boolean isEnabled() {
+        return minBytes >= 0;
+    }
+
+    /**
+     * Choose the coding for a request and mark the response as varying by Accept-Encoding
+     */
+    public ContentEncoding negotiate(Request req, Response res) {
+        if (!isEnabled()) {
+            return ContentEncoding.IDENTITY;
+        }
+        res.header("Vary", "Accept-Encoding");
+        return ContentEncoding.negotiate(req.headers("Accept-Encoding"));
+    }
+
+    /**
+     * Deflate a body for the cache, or null if it is too small to be worth compressing
+     * Uses the best compression level, as the work is done once and served many times.
+     */
+    public Deflated precompress(byte[] body) {
+        if (!isEnabled() || body.length < minBytes) {
+            return null;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            Adler32 adler = new Adler32();
+            adler.update(body);
+            return new Deflated(out.toByteArray(), (int) crc.getValue(), (int) adler.getValue(), body.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Send a complete body in the negotiated coding
+     * Returns what the route should return: the body itself when it goes out uncompressed,
+     * or an empty string once the compressed bytes have been written.
+     */
+    public Object send(Response res, ContentEncoding encoding, byte[] body, Deflated deflated) throws IOException {
+        if (encoding == ContentEncoding.IDENTITY || !isEnabled() || body.length < minBytes) {
+            return body;
+        }
+        if (deflated == null) {
+            deflated = precompress(body);
+        }
+        res.header("Content-Encoding", encoding.token());
+        res.raw().setContentLength(deflated.data().length + framingBytes(encoding));
+        OutputStream out = res.raw().getOutputStream();
+        writeHeader(out, encoding);
+        out.write(deflated.data());
+        writeTrailer(out, encoding, encoding == ContentEncoding.GZIP ? deflated.crc32() : deflated.adler32(), deflated.length());
+        out.flush();
+        record(body.length, deflated.data().length + framingBytes(encoding));
+        return "";
+    }
+
+    /**
+     * Open a stream for a body written piece by piece
+     * The stream holds back the first bytes until it knows whether the body reaches the
+     * threshold. Close it when done; that finishes the body but leaves the connection open.
+     */
+    public OutputStream open(Response res, ContentEncoding encoding) throws IOException {
+        if (encoding == ContentEncoding.IDENTITY || !isEnabled()) {
+            return new CompressingOutputStream(this, res, ContentEncoding.IDENTITY, 0);
+        }
+        return new CompressingOutputStream(this, res, encoding, minBytes);
+    }
+
+    public Stats stats() {
+        long uncompressed = uncompressedBytes.sum();
+        long compressed = compressedBytes.sum();
+        return new Stats(compressedResponses.sum(), uncompressed, compressed,
+                compressed == 0 ? 0 : (double) uncompressed / compressed);
+    }
+
+    void record(long uncompressed, long compressed) {
+        compressedResponses.increment();
+        uncompressedBytes.add(uncompressed);
+        compressedBytes.add(compressed);
+    }
+
+    static int framingBytes(ContentEncoding encoding) {
+        return encoding == ContentEncoding.GZIP ? GZIP_HEADER.length + 8 : ZLIB_HEADER.length + 4;
+    }
+
+    static void writeHeader(OutputStream out, ContentEncoding encoding) throws IOException {
+        out.write(encoding == ContentEncoding.GZIP ? GZIP_HEADER : ZLIB_HEADER);
+    }
+
+    /**
+     * gzip ends with CRC-32 and length, little-endian; zlib ends with Adler-32, big-endian
+     */
+    static void writeTrailer(OutputStream out, ContentEncoding encoding, int checksum, int length) throws IOException {
+        if (encoding == ContentEncoding.GZIP) {
+            writeIntLittleEndian(out, checksum);
+            writeIntLittleEndian(out, length);
+        } else {
+            out.write(checksum >>> 24);
+            out.write(checksum >>> 16);
+            out.write(checksum >>> 8);
+            out.write(checksum);
+        }
+    }
+
+    private static void writeIntLittleEndian(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
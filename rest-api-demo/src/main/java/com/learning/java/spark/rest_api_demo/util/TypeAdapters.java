@@ -0,0 +1,177 @@
+package com.learning.java.spark.rest_api_demo.util;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.learning.java.spark.rest_api_demo.model.ApiError;
+import com.learning.java.spark.rest_api_demo.model.ErrorResponse;
+import com.learning.java.spark.rest_api_demo.model.HealthResponse;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Streaming Gson adapters for LocalDateTime and the small response records
+ */
+final class TypeAdapters {
+
+    private TypeAdapters() {
+    }
+
+    /**
+     * Write a timestamp in ISO_LOCAL_DATE_TIME form without going through DateTimeFormatter
+     * The digits are laid out in a single char buffer, quotes included, and passed to the
+     * writer as a raw value so no escaping pass is needed.
+     */
+    static void writeLocalDateTime(JsonWriter out, LocalDateTime value) throws IOException {
+        int year = value.getYear();
+        if (year < 0 || year > 9999) {
+            out.value(value.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            return;
+        }
+        char[] buf = new char[31];
+        buf[0] = '"';
+        writeDigits(buf, 1, year, 4);
+        buf[5] = '-';
+        writeDigits(buf, 6, value.getMonthValue(), 2);
+        buf[8] = '-';
+        writeDigits(buf, 9, value.getDayOfMonth(), 2);
+        buf[11] = 'T';
+        writeDigits(buf, 12, value.getHour(), 2);
+        buf[14] = ':';
+        writeDigits(buf, 15, value.getMinute(), 2);
+        buf[17] = ':';
+        writeDigits(buf, 18, value.getSecond(), 2);
+        int end = 20;
+
+        int nano = value.getNano();
+        if (nano != 0) {
+            // Same as ISO_LOCAL_DATE_TIME: as many fraction digits as needed, trailing zeros dropped
+            int digits = 9;
+            while (nano % 10 == 0) {
+                nano /= 10;
+                digits--;
+            }
+            buf[end++] = '.';
+            writeDigits(buf, end, nano, digits);
+            end += digits;
+        }
+        buf[end++] = '"';
+        out.jsonValue(new String(buf, 0, end));
+    }
+
+    private static void writeDigits(char[] buf, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    static final class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
+        @Override
+        public void write(JsonWriter out, LocalDateTime value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+            } else {
+                writeLocalDateTime(out, value);
+            }
+        }
+
+        @Override
+        public LocalDateTime read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return LocalDateTime.parse(in.nextString(), DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+    }
+
+    static final class ErrorResponseAdapter extends TypeAdapter<ErrorResponse> {
+        @Override
+        public void write(JsonWriter out, ErrorResponse value) throws IOException {
+            out.beginObject();
+            out.name("error").value(value.error());
+            out.endObject();
+        }
+
+        @Override
+        public ErrorResponse read(JsonReader in) throws IOException {
+            String error = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("error".equals(in.nextName()) && in.peek() != JsonToken.NULL) {
+                    error = in.nextString();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ErrorResponse(error);
+        }
+    }
+
+    static final class ApiErrorAdapter extends TypeAdapter<ApiError> {
+        @Override
+        public void write(JsonWriter out, ApiError value) throws IOException {
+            out.beginObject();
+            out.name("status").value(value.status());
+            out.name("message").value(value.message());
+            out.endObject();
+        }
+
+        @Override
+        public ApiError read(JsonReader in) throws IOException {
+            int status = 0;
+            String message = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                } else if ("status".equals(name)) {
+                    status = in.nextInt();
+                } else if ("message".equals(name)) {
+                    message = in.nextString();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ApiError(status, message);
+        }
+    }
+
+    static final class HealthResponseAdapter extends TypeAdapter<HealthResponse> {
+        @Override
+        public void write(JsonWriter out, HealthResponse value) throws IOException {
+            out.beginObject();
+            out.name("status").value(value.status());
+            out.name("message").value(value.message());
+            out.endObject();
+        }
+
+        @Override
+        public HealthResponse read(JsonReader in) throws IOException {
+            String status = null;
+            String message = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                } else if ("status".equals(name)) {
+                    status = in.nextString();
+                } else if ("message".equals(name)) {
+                    message = in.nextString();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return new HealthResponse(status, message);
+        }
+    }
+}
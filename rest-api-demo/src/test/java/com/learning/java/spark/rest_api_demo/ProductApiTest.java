@@ -1,8 +1,25 @@
 package com.learning.java.spark.rest_api_demo;
 
 import io.restassured.RestAssured;
+import io.restassured.config.DecoderConfig;
+import io.restassured.config.RestAssuredConfig;
 import io.restassured.http.ContentType;
+import io.restassured.response.Response;
 import org.junit.jupiter.api.*;
+import spark.Spark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import static io.restassured.RestAssured.*;
 import static org.hamcrest.Matchers.*;
@@ -18,15 +35,9 @@ public class ProductApiTest {
         RestAssured.baseURI = "http://localhost";
         RestAssured.port = 8081;
 
-        // Start the application in a separate thread
-        new Thread(() -> RestApiApplication.main(new String[]{})).start();
-
-        // Wait for server to start
-        try {
-            Thread.sleep(2000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        // Start the application and wait until Jetty is accepting connections
+        RestApiApplication.main(new String[]{});
+        Spark.awaitInitialization();
     }
 
     @Test
@@ -209,4 +220,851 @@ public class ProductApiTest {
                 .statusCode(404)
                 .body("message", equalTo("Route not found"));
     }
-}
\ No newline at end of file
+
+    @Test
+    @Order(13)
+    public void testFilterByCategoryAfterCategoryChange() {
+        String movedProduct = """
+            {
+                "name": "Keyboard",
+                "description": "Mechanical keyboard",
+                "price": 89.99,
+                "quantity": 30,
+                "category": "Accessories"
+            }
+            """;
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(movedProduct)
+                .when()
+                .put("/api/products/3")
+                .then()
+                .statusCode(200);
+
+        given()
+                .queryParam("category", "accessories")
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(200)
+                .body("id", hasItem("3"));
+
+        given()
+                .queryParam("category", "Electronics")
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(200)
+                .body("id", not(hasItem("3")));
+    }
+
+    @Test
+    @Order(14)
+    public void testPagination() {
+        Response firstPage = given()
+                .queryParam("limit", 2)
+                .when()
+                .get("/api/products");
+
+        firstPage.then()
+                .statusCode(200)
+                .body("size()", equalTo(2))
+                .header("Link", containsString("rel=\"next\""));
+
+        String link = firstPage.header("Link");
+        String cursor = link.substring(link.indexOf("cursor=") + 7, link.indexOf('>'));
+        String lastIdOnFirstPage = firstPage.path("id[1]");
+
+        given()
+                .queryParam("limit", 2)
+                .queryParam("cursor", cursor)
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(200)
+                .body("size()", greaterThan(0))
+                .body("id", not(hasItem(lastIdOnFirstPage)));
+    }
+
+    @Test
+    @Order(15)
+    public void testPaginationWithInvalidParameters() {
+        given()
+                .queryParam("limit", 0)
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(400);
+
+        // An error is never tagged, so it cannot be revalidated into a 304
+        given()
+                .queryParam("cursor", "not-a-cursor")
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(400)
+                .header("ETag", nullValue());
+    }
+
+    @Test
+    @Order(16)
+    public void testCompactAndPrettyJson() {
+        given()
+                .when()
+                .get("/api/products/1")
+                .then()
+                .statusCode(200)
+                .body(not(containsString("\n")));
+
+        given()
+                .queryParam("pretty", "true")
+                .when()
+                .get("/api/products/1")
+                .then()
+                .statusCode(200)
+                .body(containsString("\n"))
+                .body("id", equalTo("1"));
+
+        given()
+                .header("Accept", "application/json; pretty=true")
+                .when()
+                .get("/api/health")
+                .then()
+                .statusCode(200)
+                .body(containsString("\n"))
+                .body("status", equalTo("UP"));
+    }
+
+    @Test
+    @Order(17)
+    public void testPriceRangeFilter() {
+        given()
+                .queryParam("minPrice", 50)
+                .queryParam("maxPrice", 300)
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(200)
+                .body("size()", greaterThan(0))
+                .body("price", everyItem(both(greaterThanOrEqualTo(50f)).and(lessThanOrEqualTo(300f))))
+                .body("price[0]", equalTo(89.99f));
+
+        Response firstPage = given()
+                .queryParam("minPrice", 50)
+                .queryParam("maxPrice", 300)
+                .queryParam("limit", 1)
+                .when()
+                .get("/api/products");
+        String link = firstPage.header("Link");
+        String cursor = link.substring(link.indexOf("cursor=") + 7, link.indexOf('>'));
+
+        given()
+                .queryParam("minPrice", 50)
+                .queryParam("maxPrice", 300)
+                .queryParam("limit", 1)
+                .queryParam("cursor", cursor)
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(200)
+                .body("price[0]", greaterThan(89.99f));
+
+        given()
+                .queryParam("minPrice", 300)
+                .queryParam("maxPrice", 50)
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(18)
+    public void testSearch() {
+        given()
+                .queryParam("q", "Mechanical KEYBOARD")
+                .when()
+                .get("/api/products/search")
+                .then()
+                .statusCode(200)
+                .body("id[0]", equalTo("3"));
+
+        // Product 1 was updated earlier, so its old description no longer matches
+        given()
+                .queryParam("q", "high-performance")
+                .when()
+                .get("/api/products/search")
+                .then()
+                .statusCode(200)
+                .body("id", not(hasItem("1")));
+
+        given()
+                .queryParam("q", "updated")
+                .when()
+                .get("/api/products/search")
+                .then()
+                .statusCode(200)
+                .body("id", hasItem("1"));
+
+        given()
+                .when()
+                .get("/api/products/search")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(19)
+    public void testBulkCreate() {
+        String ndjson = """
+            {"name": "Bulk Lamp", "price": 19.99, "quantity": 3, "category": "Bulk"}
+            {"name": "Broken",
+            {"name": "Negative", "price": -1, "quantity": 1, "category": "Bulk"}
+
+            {"name": "Bulk Pen", "price": 1.5, "quantity": 100, "category": "Bulk"}
+            """;
+
+        given()
+                .contentType("application/x-ndjson")
+                .body(ndjson.getBytes(StandardCharsets.UTF_8))
+                .when()
+                .post("/api/products/_bulk")
+                .then()
+                .statusCode(200)
+                .body("created", equalTo(2))
+                .body("failed", equalTo(2))
+                .body("errors.line", contains(2, 3))
+                .body("errors[1].error", equalTo("Price cannot be negative"));
+
+        given()
+                .queryParam("category", "bulk")
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(200)
+                .body("name", containsInAnyOrder("Bulk Lamp", "Bulk Pen"));
+    }
+
+    @Test
+    @Order(20)
+    public void testConditionalGetForProduct() {
+        String etag = given()
+                .when()
+                .get("/api/products/4")
+                .then()
+                .statusCode(200)
+                .header("ETag", notNullValue())
+                .extract().header("ETag");
+
+        given()
+                .header("If-None-Match", etag)
+                .when()
+                .get("/api/products/4")
+                .then()
+                .statusCode(304);
+
+        String updatedChair = """
+            {
+                "name": "Desk Chair",
+                "description": "Ergonomic office chair",
+                "price": 249.99,
+                "quantity": 15,
+                "category": "Furniture"
+            }
+            """;
+        given()
+                .contentType(ContentType.JSON)
+                .body(updatedChair)
+                .when()
+                .put("/api/products/4")
+                .then()
+                .statusCode(200);
+
+        given()
+                .header("If-None-Match", etag)
+                .when()
+                .get("/api/products/4")
+                .then()
+                .statusCode(200)
+                .header("ETag", not(equalTo(etag)))
+                .body("price", equalTo(249.99f));
+    }
+
+    @Test
+    @Order(21)
+    public void testConditionalGetForCategoryList() {
+        String etag = given()
+                .queryParam("category", "Furniture")
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(200)
+                .extract().header("ETag");
+
+        // A write in another category leaves this listing untouched
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"name\": \"Stapler\", \"price\": 5, \"quantity\": 1, \"category\": \"Office\"}")
+                .when()
+                .post("/api/products")
+                .then()
+                .statusCode(201);
+
+        given()
+                .queryParam("category", "Furniture")
+                .header("If-None-Match", etag)
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(304);
+
+        given()
+                .when()
+                .delete("/api/products/4")
+                .then()
+                .statusCode(204);
+
+        given()
+                .queryParam("category", "Furniture")
+                .header("If-None-Match", etag)
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(200)
+                .body("size()", equalTo(0));
+    }
+
+    @Test
+    @Order(22)
+    public void testResponseCacheServesAndInvalidates() {
+        given().when().get("/api/products/3").then().statusCode(200);
+        int hits = given().when().get("/api/metrics/cache").then().statusCode(200).extract().path("hits");
+
+        given()
+                .when()
+                .get("/api/products/3")
+                .then()
+                .statusCode(200)
+                .body("name", equalTo("Keyboard"));
+        given()
+                .queryParam("category", "Accessories")
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(200)
+                .body("price", hasItem(89.99f));
+
+        given()
+                .when()
+                .get("/api/metrics/cache")
+                .then()
+                .statusCode(200)
+                .body("hits", greaterThan(hits))
+                .body("bytes", greaterThan(0));
+
+        String cheaperKeyboard = """
+            {
+                "name": "Keyboard",
+                "description": "Mechanical keyboard",
+                "price": 79.99,
+                "quantity": 75,
+                "category": "Accessories"
+            }
+            """;
+        given()
+                .contentType(ContentType.JSON)
+                .body(cheaperKeyboard)
+                .when()
+                .put("/api/products/3")
+                .then()
+                .statusCode(200);
+
+        // Both the product and the listings that hold it must reflect the write
+        given()
+                .when()
+                .get("/api/products/3")
+                .then()
+                .statusCode(200)
+                .body("price", equalTo(79.99f));
+        given()
+                .queryParam("category", "Accessories")
+                .when()
+                .get("/api/products")
+                .then()
+                .statusCode(200)
+                .body("price", hasItem(79.99f))
+                .body("price", not(hasItem(89.99f)));
+    }
+
+    @Test
+    @Order(23)
+    public void testResponseCompression() throws IOException {
+        // Keep RestAssured from decoding, so the raw coding can be checked
+        RestAssuredConfig raw = RestAssuredConfig.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders());
+
+        Response gzipped = given()
+                .config(raw)
+                .header("Accept-Encoding", "gzip")
+                .when()
+                .get("/api/products");
+        gzipped.then()
+                .statusCode(200)
+                .header("Content-Encoding", "gzip")
+                .header("Vary", "Accept-Encoding");
+        String json = inflate(new GZIPInputStream(new ByteArrayInputStream(gzipped.asByteArray())));
+        String plain = given().header("Accept-Encoding", "identity").when().get("/api/products").asString();
+        Assertions.assertEquals(plain, json);
+
+        // The second request is served from the pre-compressed cache entry
+        byte[] again = given().config(raw).header("Accept-Encoding", "gzip").when().get("/api/products").asByteArray();
+        Assertions.assertEquals(json, inflate(new GZIPInputStream(new ByteArrayInputStream(again))));
+
+        Response deflated = given()
+                .config(raw)
+                .header("Accept-Encoding", "gzip;q=0.5, deflate")
+                .when()
+                .get("/api/products");
+        deflated.then()
+                .statusCode(200)
+                .header("Content-Encoding", "deflate");
+        Assertions.assertEquals(json, inflate(new InflaterInputStream(new ByteArrayInputStream(deflated.asByteArray()))));
+
+        // Single products are under the threshold and go out as they are
+        given()
+                .config(raw)
+                .header("Accept-Encoding", "gzip")
+                .when()
+                .get("/api/products/1")
+                .then()
+                .statusCode(200)
+                .header("Content-Encoding", nullValue())
+                .body("id", equalTo("1"));
+
+        given()
+                .when()
+                .get("/api/metrics/compression")
+                .then()
+                .statusCode(200)
+                .body("compressedResponses", greaterThanOrEqualTo(3))
+                .body("ratio", greaterThan(1.0f));
+    }
+
+    private static String inflate(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    @Order(24)
+    public void testOversizedBodyIsRejected() throws IOException {
+        // Only the start of the body is sent: the declared length alone must trigger the 413
+        try (Socket socket = new Socket("localhost", 8081)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /api/products HTTP/1.1\r\n"
+                    + "Host: localhost\r\n"
+                    + "Content-Type: application/json\r\n"
+                    + "Content-Length: 1000000000\r\n\r\n"
+                    + "{\"name\": ").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response = new String(socket.getInputStream().readNBytes(12), StandardCharsets.US_ASCII);
+            Assertions.assertEquals("HTTP/1.1 413", response);
+        }
+    }
+
+    @Test
+    @Order(25)
+    public void testMetricsByRouteTemplate() {
+        given().when().get("/api/products/1").then().statusCode(200);
+        given().when().get("/api/products/999").then().statusCode(404);
+
+        given()
+                .when()
+                .get("/api/metrics")
+                .then()
+                .statusCode(200)
+                .contentType(ContentType.JSON)
+                .body("requests", greaterThan(0))
+                .body("inFlight", greaterThanOrEqualTo(1))
+                .body("routes.find { it.method == 'GET' && it.route == '/api/products/:id' && it.status == '2xx' }.count",
+                        greaterThan(0))
+                .body("routes.find { it.method == 'GET' && it.route == '/api/products/:id' && it.status == '4xx' }.p99Millis",
+                        notNullValue())
+                .body("routes.route", not(hasItem("/api/products/1")))
+                .body("cache.hits", notNullValue())
+                .body("compression.ratio", notNullValue());
+
+        given()
+                .queryParam("format", "prometheus")
+                .when()
+                .get("/api/metrics")
+                .then()
+                .statusCode(200)
+                .contentType(containsString("text/plain"))
+                .body(containsString("http_request_duration_seconds_count{method=\"GET\",route=\"/api/products/:id\",status=\"2xx\"}"))
+                .body(containsString("http_request_duration_seconds_bucket{method=\"GET\",route=\"/api/products/:id\",status=\"4xx\",le=\"+Inf\"}"))
+                .body(containsString("http_requests_in_flight 1"));
+    }
+
+    @Test
+    @Order(26)
+    public void testProfilingMode() {
+        given()
+                .when()
+                .get("/api/admin/profile")
+                .then()
+                .statusCode(200)
+                .body("sampleEvery", equalTo(0));
+
+        given()
+                .queryParam("sampleEvery", 1)
+                .when()
+                .post("/api/admin/profile")
+                .then()
+                .statusCode(200)
+                .body("sampleEvery", equalTo(1));
+
+        given().when().get("/api/products").then().statusCode(200);
+        given().queryParam("category", "Accessories").when().get("/api/products").then().statusCode(200);
+
+        given()
+                .queryParam("limit", 5)
+                .when()
+                .get("/api/admin/profile")
+                .then()
+                .statusCode(200)
+                .body("sampledRequests", greaterThanOrEqualTo(2))
+                .body("skippedRequests", equalTo(0))
+                .body("routes.key", hasItem("GET /api/products"))
+                .body("shapes.key", hasItems("GET /api/products", "GET /api/products?category"))
+                .body("routes.find { it.key == 'GET /api/products' }.allocatedBytes", greaterThan(0))
+                .body("routes.size()", lessThanOrEqualTo(5));
+
+        given()
+                .queryParam("sampleEvery", 0)
+                .when()
+                .post("/api/admin/profile")
+                .then()
+                .statusCode(200)
+                .body("sampleEvery", equalTo(0));
+
+        given()
+                .queryParam("sampleEvery", -1)
+                .when()
+                .post("/api/admin/profile")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(27)
+    public void testStockReservations() {
+        String id = given()
+                .contentType(ContentType.JSON)
+                .body("{\"name\": \"Limited Edition\", \"price\": 49.99, \"quantity\": 3, \"category\": \"Collectibles\"}")
+                .when()
+                .post("/api/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        String reservationId = given()
+                .contentType(ContentType.JSON)
+                .body("{\"quantity\": 2, \"ttlSeconds\": 60}")
+                .when()
+                .post("/api/products/" + id + "/reserve")
+                .then()
+                .statusCode(201)
+                .body("productId", equalTo(id))
+                .body("quantity", equalTo(2))
+                .body("status", equalTo("HELD"))
+                .extract().path("id");
+        given().when().get("/api/products/" + id).then().body("quantity", equalTo(1));
+
+        // Only one unit is left
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"quantity\": 2}")
+                .when()
+                .post("/api/products/" + id + "/reserve")
+                .then()
+                .statusCode(409);
+
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"reservationId\": \"" + reservationId + "\"}")
+                .when()
+                .post("/api/products/" + id + "/release")
+                .then()
+                .statusCode(200)
+                .body("status", equalTo("RELEASED"));
+        given().when().get("/api/products/" + id).then().body("quantity", equalTo(3));
+
+        // A reservation ends once
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"reservationId\": \"" + reservationId + "\"}")
+                .when()
+                .post("/api/products/" + id + "/confirm")
+                .then()
+                .statusCode(409)
+                .body("error", containsString("RELEASED"));
+
+        String confirmedId = given()
+                .contentType(ContentType.JSON)
+                .body("{\"quantity\": 3}")
+                .when()
+                .post("/api/products/" + id + "/reserve")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"reservationId\": \"" + confirmedId + "\"}")
+                .when()
+                .post("/api/products/" + id + "/confirm")
+                .then()
+                .statusCode(200)
+                .body("status", equalTo("CONFIRMED"));
+        given().when().get("/api/products/" + id).then().body("quantity", equalTo(0));
+
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"quantity\": 0}")
+                .when()
+                .post("/api/products/" + id + "/reserve")
+                .then()
+                .statusCode(400);
+
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"quantity\": 1}")
+                .when()
+                .post("/api/products/999999/reserve")
+                .then()
+                .statusCode(404);
+    }
+
+    @Test
+    @Order(28)
+    public void testPatchProduct() {
+        String id = given()
+                .contentType(ContentType.JSON)
+                .body("{\"name\": \"Desk Lamp\", \"description\": \"LED lamp\", \"price\": 29.99, \"quantity\": 10, \"category\": \"Lighting\"}")
+                .when()
+                .post("/api/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        given()
+                .contentType("application/merge-patch+json")
+                .body("{\"price\": 24.99}")
+                .when()
+                .patch("/api/products/" + id)
+                .then()
+                .statusCode(200)
+                .body("price", equalTo(24.99f))
+                .body("name", equalTo("Desk Lamp"))
+                .body("quantity", equalTo(10))
+                .body("category", equalTo("Lighting"));
+
+        // Category moves the product between category listings; null clears the description
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"category\": \"Furniture\", \"description\": null}")
+                .when()
+                .patch("/api/products/" + id)
+                .then()
+                .statusCode(200)
+                .body("category", equalTo("Furniture"))
+                .body("$", not(hasKey("description")));
+        given().queryParam("category", "Lighting").when().get("/api/products").then().body("id", not(hasItem(id)));
+        given().queryParam("category", "Furniture").when().get("/api/products").then().body("id", hasItem(id));
+
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"quantity\": -1}")
+                .when()
+                .patch("/api/products/" + id)
+                .then()
+                .statusCode(400);
+
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"id\": \"7\"}")
+                .when()
+                .patch("/api/products/" + id)
+                .then()
+                .statusCode(400)
+                .body("error", containsString("id"));
+
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"price\": 1}")
+                .when()
+                .patch("/api/products/999999")
+                .then()
+                .statusCode(404);
+    }
+
+    @Test
+    @Order(29)
+    public void testCatalogStats() {
+        String cheap = given()
+                .contentType(ContentType.JSON)
+                .body("{\"name\": \"Tent\", \"price\": 50.0, \"quantity\": 4, \"category\": \"Camping\"}")
+                .when()
+                .post("/api/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+        String dear = given()
+                .contentType(ContentType.JSON)
+                .body("{\"name\": \"Stove\", \"price\": 120.0, \"quantity\": 1, \"category\": \"camping\"}")
+                .when()
+                .post("/api/products")
+                .then()
+                .statusCode(201)
+                .extract().path("id");
+
+        given()
+                .queryParam("category", "CAMPING")
+                .when()
+                .get("/api/products/stats")
+                .then()
+                .statusCode(200)
+                .body("category", equalTo("Camping"))
+                .body("count", equalTo(2))
+                .body("totalQuantity", equalTo(5))
+                .body("totalValue", equalTo(320.0f))
+                .body("minPrice", equalTo(50.0f))
+                .body("maxPrice", equalTo(120.0f));
+
+        // Min and max follow deletes and price changes
+        delete("/api/products/" + dear).then().statusCode(204);
+        given()
+                .contentType(ContentType.JSON)
+                .body("{\"price\": 45.5}")
+                .when()
+                .patch("/api/products/" + cheap)
+                .then()
+                .statusCode(200);
+        given()
+                .queryParam("category", "Camping")
+                .when()
+                .get("/api/products/stats")
+                .then()
+                .body("count", equalTo(1))
+                .body("totalValue", equalTo(182.0f))
+                .body("minPrice", equalTo(45.5f))
+                .body("maxPrice", equalTo(45.5f));
+
+        int productCount = get("/api/products/stats").then().extract().path("total.count");
+        get("/api/products/stats")
+                .then()
+                .statusCode(200)
+                .body("total.count", greaterThan(0))
+                .body("categories.category", hasItem("Camping"))
+                .body("categories.find { it.category == 'Camping' }.count", equalTo(1));
+
+        delete("/api/products/" + cheap).then().statusCode(204);
+        get("/api/products/stats")
+                .then()
+                .body("total.count", equalTo(productCount - 1))
+                .body("categories.category", not(hasItem("Camping")));
+        given().queryParam("category", "Camping").when().get("/api/products/stats")
+                .then().statusCode(200).body("count", equalTo(0)).body("$", not(hasKey("minPrice")));
+    }
+
+    @Test
+    @Order(30)
+    public void testChangeFeedStreamsAndResumes() throws IOException {
+        HttpURLConnection live = openChangeFeed(null);
+        BufferedReader liveEvents = eventReader(live);
+        try {
+            String id = given()
+                    .contentType(ContentType.JSON)
+                    .body("{\"name\": \"Kite\", \"price\": 15.0, \"quantity\": 2, \"category\": \"Toys\"}")
+                    .when()
+                    .post("/api/products")
+                    .then()
+                    .statusCode(201)
+                    .extract().path("id");
+            given().contentType(ContentType.JSON).body("{\"quantity\": 1}").when().patch("/api/products/" + id)
+                    .then().statusCode(200);
+
+            String[] created = nextEventFor(liveEvents, id);
+            Assertions.assertEquals("created", created[1]);
+            Assertions.assertTrue(created[2].contains("\"product\":{"));
+            String[] updated = nextEventFor(liveEvents, id);
+            Assertions.assertEquals("updated", updated[1]);
+            Assertions.assertTrue(updated[2].contains("\"quantity\":1"));
+
+            // Reconnecting with Last-Event-ID replays what followed it
+            HttpURLConnection resumed = openChangeFeed(created[0]);
+            try {
+                String[] replayed = nextEventFor(eventReader(resumed), id);
+                Assertions.assertEquals(updated[0], replayed[0]);
+            } finally {
+                resumed.disconnect();
+            }
+        } finally {
+            live.disconnect();
+        }
+
+        // An ID the feed cannot resume from asks the client to reload
+        HttpURLConnection unknown = openChangeFeed("unknown-1");
+        try {
+            Assertions.assertEquals("reset", nextEvent(eventReader(unknown))[1]);
+        } finally {
+            unknown.disconnect();
+        }
+    }
+
+    private static HttpURLConnection openChangeFeed(String lastEventId) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create("http://localhost:8081/api/products/changes").toURL().openConnection();
+        connection.setReadTimeout(10_000);
+        if (lastEventId != null) {
+            connection.setRequestProperty("Last-Event-ID", lastEventId);
+        }
+        Assertions.assertEquals(200, connection.getResponseCode());
+        Assertions.assertTrue(connection.getContentType().startsWith("text/event-stream"));
+        return connection;
+    }
+
+    private static BufferedReader eventReader(HttpURLConnection connection) throws IOException {
+        return new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read the next event as {id, event, data}, skipping comments and the retry field
+     */
+    private static String[] nextEvent(BufferedReader reader) throws IOException {
+        String[] event = new String[3];
+        for (String line; (line = reader.readLine()) != null; ) {
+            if (line.isEmpty()) {
+                if (event[1] != null) {
+                    return event;
+                }
+            } else if (line.startsWith("id: ")) {
+                event[0] = line.substring(4);
+            } else if (line.startsWith("event: ")) {
+                event[1] = line.substring(7);
+            } else if (line.startsWith("data: ")) {
+                event[2] = line.substring(6);
+            }
+        }
+        throw new IOException("Change feed ended");
+    }
+
+    private static String[] nextEventFor(BufferedReader reader, String productId) throws IOException {
+        while (true) {
+            String[] event = nextEvent(reader);
+            if (event[2] != null && event[2].contains("\"id\":\"" + productId + "\"")) {
+                return event;
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.learning.java.spark.rest_api_demo.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the latency histogram's buckets and percentiles
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEveryValueFallsInsideItsBucket() {
+        for (long micros = 0; micros < 1_000_000; micros += 7) {
+            int bucket = LatencyHistogram.bucket(micros);
+            long lower = bucket == 0 ? 0 : LatencyHistogram.upperBound(bucket - 1);
+            assertTrue(lower <= micros && micros < LatencyHistogram.upperBound(bucket), "value " + micros);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(millis * 1_000_000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100, snapshot.count());
+        assertEquals(100_000, snapshot.maxMicros());
+        assertEquals(50_000, snapshot.percentile(0.5), 50_000 * 0.125);
+        assertEquals(99_000, snapshot.percentile(0.99), 99_000 * 0.125);
+        assertEquals(100, snapshot.countAtMost(Long.MAX_VALUE));
+        assertTrue(snapshot.countAtMost(10_000) <= 10);
+    }
+}
@@ -0,0 +1,51 @@
+package com.learning.java.spark.rest_api_demo.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the sliding-window rate counter
+ */
+public class RateCounterTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void testRateCoversOnlyTheElapsedPartOfTheWindow() {
+        RateCounter counter = new RateCounter(60, 0);
+        for (int second = 0; second < 10; second++) {
+            for (int i = 0; i < 100; i++) {
+                counter.increment(second * SECOND + i);
+            }
+        }
+        assertEquals(0, counter.perSecond(SECOND / 2));
+        assertEquals(100, counter.perSecond(10 * SECOND));
+
+        // Once the window is full, old seconds drop out of it
+        counter.increment(70 * SECOND);
+        assertEquals(0, counter.perSecond(70 * SECOND));
+        assertEquals(1 / 60.0, counter.perSecond(71 * SECOND));
+    }
+
+    @Test
+    public void testNoIncrementIsLostWhenASecondStarts() throws Exception {
+        RateCounter counter = new RateCounter(60, 0);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int second = 0; second < 60; second++) {
+                    for (int i = 0; i < 1000; i++) {
+                        counter.increment(second * SECOND + i);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000, counter.perSecond(60 * SECOND));
+    }
+}
@@ -0,0 +1,25 @@
+package com.learning.java.spark.rest_api_demo.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for which requests the profiler can measure
+ */
+public class RequestProfilerTest {
+
+    @Test
+    public void testVirtualThreadRequestsAreCountedAsSkipped() throws Exception {
+        RequestProfiler profiler = new RequestProfiler(1, 60, true);
+        assertNotNull(profiler.begin());
+
+        RequestProfiler.Sample[] sample = new RequestProfiler.Sample[1];
+        Thread.ofVirtual().start(() -> sample[0] = profiler.begin()).join();
+
+        assertNull(sample[0]);
+        RequestProfiler.Report report = profiler.report(10, false);
+        assertEquals(1, report.skippedRequests());
+        assertEquals(0, report.sampledRequests());
+    }
+}
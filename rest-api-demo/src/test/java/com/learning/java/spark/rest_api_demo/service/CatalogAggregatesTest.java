@@ -0,0 +1,78 @@
+package com.learning.java.spark.rest_api_demo.service;
+
+import com.learning.java.spark.rest_api_demo.model.CatalogStats;
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.model.ProductPatch;
+import com.learning.java.spark.rest_api_demo.model.ProductStats;
+import com.learning.java.spark.rest_api_demo.util.JsonUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the incrementally maintained catalog figures match a full recount
+ */
+public class CatalogAggregatesTest {
+    private static final String[] CATEGORIES = {"Tools", "tools", "Garden", "Kitchen"};
+
+    @Test
+    public void testFiguresMatchARecountAfterConcurrentWrites() throws Exception {
+        ProductService service = new ProductService();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                writers.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 2000; i++) {
+                        String id = Integer.toString(random.nextInt(1, 300));
+                        switch (random.nextInt(4)) {
+                            case 0 -> service.createProduct(product(random));
+                            case 1 -> service.updateProduct(id, product(random));
+                            case 2 -> service.patchProduct(id, JsonUtil.fromJson(
+                                    "{\"price\": " + random.nextInt(1, 500) / 4.0 + "}", ProductPatch.class));
+                            default -> service.deleteProduct(id);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Product> all = service.getAllProducts();
+        CatalogStats stats = service.getStats();
+        assertFigures(all, stats.total());
+        for (ProductStats category : stats.categories()) {
+            assertFigures(all.stream().filter(p -> category.category().equalsIgnoreCase(p.getCategory())).toList(), category);
+        }
+        assertEquals(all.stream().filter(p -> p.getCategory() != null).count(),
+                stats.categories().stream().mapToLong(ProductStats::count).sum());
+    }
+
+    private static Product product(Random random) {
+        return new Product(null, "Item", null, random.nextInt(1, 500) / 4.0, random.nextInt(20),
+                CATEGORIES[random.nextInt(CATEGORIES.length)]);
+    }
+
+    private static void assertFigures(List<Product> products, ProductStats stats) {
+        assertEquals(products.size(), stats.count());
+        assertEquals(products.stream().mapToLong(Product::getQuantity).sum(), stats.totalQuantity());
+        assertEquals(products.stream().mapToDouble(p -> p.getPrice() * p.getQuantity()).sum(), stats.totalValue(), 1e-6);
+        assertEquals(products.stream().mapToDouble(Product::getPrice).min().stream().boxed().findFirst().orElse(null),
+                stats.minPrice());
+        assertEquals(products.stream().mapToDouble(Product::getPrice).max().stream().boxed().findFirst().orElse(null),
+                stats.maxPrice());
+    }
+}
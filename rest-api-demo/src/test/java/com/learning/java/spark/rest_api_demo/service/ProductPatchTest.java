@@ -0,0 +1,74 @@
+package com.learning.java.spark.rest_api_demo.service;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.model.ProductPatch;
+import com.learning.java.spark.rest_api_demo.util.JsonUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for partial product updates
+ */
+public class ProductPatchTest {
+
+    private static ProductPatch parse(String json) {
+        return JsonUtil.fromJson(json.getBytes(StandardCharsets.UTF_8), ProductPatch.class);
+    }
+
+    @Test
+    public void testConcurrentPatchesToDifferentFieldsAllLand() throws Exception {
+        ProductService service = new ProductService();
+        String id = service.createProduct(new Product(null, "Mug", "Ceramic", 5.0, 0, "Kitchen")).getId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 1; i <= 200; i++) {
+            int n = i;
+            executor.submit(() -> service.patchProduct(id, parse("{\"quantity\": " + n + "}")));
+            executor.submit(() -> service.patchProduct(id, parse("{\"name\": \"Mug " + n + "\"}")));
+        }
+        executor.submit(() -> service.patchProduct(id, parse("{\"price\": 7.5}")));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Product product = service.getProductById(id).orElseThrow();
+        assertEquals(7.5, product.getPrice());
+        assertTrue(product.getQuantity() > 0);
+        assertTrue(product.getName().startsWith("Mug "));
+        assertEquals("Ceramic", product.getDescription());
+        assertEquals(1, service.searchProducts(product.getName(), 10).stream()
+                .filter(p -> p.getId().equals(id)).count());
+    }
+
+    @Test
+    public void testPatchParsing() {
+        ProductPatch patch = parse("{\"price\": 3, \"category\": null}");
+        assertTrue(patch.has(ProductPatch.Field.PRICE));
+        assertTrue(patch.has(ProductPatch.Field.CATEGORY));
+        assertFalse(patch.has(ProductPatch.Field.NAME));
+        assertTrue(parse("{}").isEmpty());
+
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"createdAt\": \"2024-01-01T00:00:00\"}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"price\": null}"));
+        assertThrows(IllegalArgumentException.class, () -> parse("{\"quantity\": 1.5}"));
+    }
+
+    @Test
+    public void testPatchWritesOnlyPresentFields() {
+        assertEquals("{\"price\":3.0,\"category\":null}", JsonUtil.toJson(parse("{\"price\": 3, \"category\": null}")));
+        assertEquals("{}", JsonUtil.toJson(parse("{}")));
+
+        ProductPatch patch = parse("{\"name\": \"Mug\", \"description\": null, \"quantity\": 4}");
+        ProductPatch copy = parse(JsonUtil.toJson(patch));
+        assertEquals("Mug", copy.getName());
+        assertTrue(copy.has(ProductPatch.Field.DESCRIPTION));
+        assertNull(copy.getDescription());
+        assertEquals(4, copy.getQuantity());
+        assertFalse(copy.has(ProductPatch.Field.PRICE));
+    }
+}
@@ -0,0 +1,244 @@
+package com.learning.java.spark.rest_api_demo.service;
+
+import com.learning.java.spark.rest_api_demo.model.CatalogStats;
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.model.ProductQuery;
+import com.learning.java.spark.rest_api_demo.service.id.AtomicIdGenerator;
+import com.learning.java.spark.rest_api_demo.service.persistence.DurabilityMode;
+import com.learning.java.spark.rest_api_demo.service.persistence.SnapshotSettings;
+import com.learning.java.spark.rest_api_demo.service.persistence.WalSettings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Restart tests for ProductService backed by the write-ahead log
+ */
+public class ProductServiceDurabilityTest {
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @EnumSource(DurabilityMode.class)
+    public void testStateIsRebuiltFromTheLog(DurabilityMode mode) throws Exception {
+        WalSettings settings = new WalSettings(tempDir.resolve("products.wal"), mode, 1);
+
+        String createdId;
+        try (ProductService service = new ProductService(new AtomicIdGenerator(), settings)) {
+            assertEquals(5, service.getProductCount());
+            createdId = service.createProduct(new Product(null, "Lamp", "Desk lamp", 19.99, 3, "Furniture")).getId();
+            service.updateProduct("1", new Product(null, "Laptop Pro", "Faster", 1499.99, 4, "Computers"));
+            service.deleteProduct("2");
+        }
+
+        try (ProductService restored = new ProductService(new AtomicIdGenerator(), settings)) {
+            assertEquals(5, restored.getProductCount());
+            assertEquals("Lamp", restored.getProductById(createdId).orElseThrow().getName());
+            assertEquals("Laptop Pro", restored.getProductById("1").orElseThrow().getName());
+            assertEquals(1, restored.getProductsByCategory("computers").size());
+            assertFalse(restored.exists("2"));
+
+            // New IDs continue after the restored ones
+            Product next = restored.createProduct(new Product(null, "Pen", null, 1.0, 1, "Office"));
+            assertTrue(Long.parseLong(next.getId()) > Long.parseLong(createdId));
+        }
+    }
+
+    @Test
+    public void testWritesTheLogRefusesAreNotApplied() throws Exception {
+        WalSettings settings = new WalSettings(tempDir.resolve("products.wal"), DurabilityMode.SYNC, 1);
+        ProductService service = new ProductService(new AtomicIdGenerator(), settings);
+        Product laptop = service.getProductById("1").orElseThrow();
+        CatalogStats stats = service.getStats();
+        long listVersion = service.getListVersion(new ProductQuery(null, null, null, null, 10));
+        List<Product> changes = new ArrayList<>();
+        service.addChangeListener((before, after) -> changes.add(after));
+
+        // Every append from here on throws
+        service.close();
+        assertThrows(RuntimeException.class,
+                () -> service.createProduct(new Product(null, "Lamp", null, 19.99, 3, "Furniture")));
+        assertThrows(RuntimeException.class,
+                () -> service.updateProduct("1", new Product(null, "Laptop Pro", null, 1499.99, 4, "Office")));
+        assertThrows(RuntimeException.class, () -> service.adjustQuantity("1", 5));
+        assertThrows(RuntimeException.class, () -> service.deleteProduct("2"));
+
+        assertEquals(5, service.getProductCount());
+        assertEquals(laptop.getName(), service.getProductById("1").orElseThrow().getName());
+        assertEquals(laptop.getQuantity(), service.getProductById("1").orElseThrow().getQuantity());
+        assertTrue(service.exists("2"));
+        assertTrue(service.getProductsByCategory("Office").isEmpty());
+        assertTrue(service.searchProducts("lamp", 10).isEmpty());
+        assertEquals(stats, service.getStats());
+        assertEquals(listVersion, service.getListVersion(new ProductQuery(null, null, null, null, 10)));
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void testEmptiedCatalogIsNotReseeded() throws Exception {
+        WalSettings walSettings = new WalSettings(tempDir.resolve("products.wal"), DurabilityMode.SYNC, 1);
+        SnapshotSettings snapshotSettings = new SnapshotSettings(tempDir.resolve("snapshots"), 3600);
+
+        try (ProductService service = new ProductService(new AtomicIdGenerator(), walSettings)) {
+            assertEquals(5, service.getProductCount());
+            for (int id = 1; id <= 5; id++) {
+                assertTrue(service.deleteProduct(Integer.toString(id)));
+            }
+        }
+        try (ProductService restored = new ProductService(new AtomicIdGenerator(), walSettings)) {
+            assertEquals(0, restored.getProductCount());
+        }
+
+        // Same with an empty snapshot and nothing after it in the log
+        try (ProductService service = new ProductService(new AtomicIdGenerator(), walSettings, snapshotSettings)) {
+            assertEquals(0, service.getProductCount());
+        }
+        try (ProductService restored = new ProductService(new AtomicIdGenerator(), null, snapshotSettings)) {
+            assertEquals(0, restored.getProductCount());
+        }
+    }
+
+    @Test
+    public void testConcurrentWritesAreAllLogged() throws Exception {
+        WalSettings settings = new WalSettings(tempDir.resolve("products.wal"), DurabilityMode.GROUP, 1);
+
+        try (ProductService service = new ProductService(new AtomicIdGenerator(), settings)) {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int i = 0; i < 400; i++) {
+                int n = i;
+                executor.submit(() -> service.createProduct(new Product(null, "Item " + n, null, n, n, "Bulk")));
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        try (ProductService restored = new ProductService(new AtomicIdGenerator(), settings)) {
+            assertEquals(405, restored.getProductCount());
+            assertEquals(400, restored.getProductsByCategory("Bulk").size());
+        }
+    }
+
+    @Test
+    public void testTornTailIsDiscarded() throws Exception {
+        Path file = tempDir.resolve("products.wal");
+        WalSettings settings = new WalSettings(file, DurabilityMode.SYNC, 0);
+        try (ProductService service = new ProductService(new AtomicIdGenerator(), settings)) {
+            service.createProduct(new Product(null, "Lamp", null, 19.99, 3, "Furniture"));
+        }
+
+        // Simulate a crash in the middle of writing a record
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (ProductService restored = new ProductService(new AtomicIdGenerator(), settings)) {
+            assertEquals(6, restored.getProductCount());
+            restored.createProduct(new Product(null, "Pen", null, 1.0, 1, "Office"));
+        }
+        try (ProductService restored = new ProductService(new AtomicIdGenerator(), settings)) {
+            assertEquals(7, restored.getProductCount());
+        }
+    }
+
+    @Test
+    public void testSnapshotPlusLogTailRestoresEverything() throws Exception {
+        WalSettings walSettings = new WalSettings(tempDir.resolve("products.wal"), DurabilityMode.ASYNC, 1);
+        SnapshotSettings snapshotSettings = new SnapshotSettings(tempDir.resolve("snapshots"), 3600);
+
+        try (ProductService service = new ProductService(new AtomicIdGenerator(), walSettings, snapshotSettings)) {
+            for (int i = 0; i < 40_000; i++) {
+                service.createProduct(new Product(null, "Item " + i, "Bulk item", i, i % 100, "Bulk"));
+            }
+            service.writeSnapshot();
+
+            // Only in the log tail after the snapshot
+            service.updateProduct("1", new Product(null, "Laptop Pro", null, 1499.99, 4, "Computers"));
+            service.deleteProduct("2");
+        }
+        // close() wrote a final snapshot; drop it so the restart needs the log tail
+        try (Stream<Path> files = Files.list(tempDir.resolve("snapshots"))) {
+            files.sorted(Comparator.reverseOrder()).limit(1).forEach(path -> path.toFile().delete());
+        }
+
+        try (ProductService restored = new ProductService(new AtomicIdGenerator(), walSettings, snapshotSettings)) {
+            assertEquals(40_004, restored.getProductCount());
+            assertEquals(40_000, restored.getProductsByCategory("bulk").size());
+            assertEquals("Laptop Pro", restored.getProductById("1").orElseThrow().getName());
+            assertFalse(restored.exists("2"));
+            assertEquals("Item 39999", restored.getProductById("40005").orElseThrow().getName());
+        }
+    }
+
+    @Test
+    public void testSnapshotAloneRestoresCatalog() throws Exception {
+        SnapshotSettings snapshotSettings = new SnapshotSettings(tempDir.resolve("snapshots"), 3600);
+
+        try (ProductService service = new ProductService(new AtomicIdGenerator(), null, snapshotSettings)) {
+            service.createProduct(new Product(null, "Lamp", null, 19.99, 3, "Furniture"));
+        }
+
+        try (ProductService restored = new ProductService(new AtomicIdGenerator(), null, snapshotSettings)) {
+            assertEquals(6, restored.getProductCount());
+            assertEquals("Lamp", restored.getProductById("6").orElseThrow().getName());
+            assertNull(restored.getProductById("6").orElseThrow().getDescription());
+            assertEquals("7", restored.createProduct(new Product(null, "Pen", null, 1.0, 1, "Office")).getId());
+        }
+    }
+
+    @Test
+    public void testDamagedNewestSnapshotFallsBackToThePreviousOne() throws Exception {
+        WalSettings walSettings = new WalSettings(tempDir.resolve("products.wal"), DurabilityMode.SYNC, 1);
+        SnapshotSettings snapshotSettings = new SnapshotSettings(tempDir.resolve("snapshots"), 3600);
+
+        try (ProductService service = new ProductService(new AtomicIdGenerator(), walSettings, snapshotSettings)) {
+            for (int i = 0; i < 20_000; i++) {
+                service.createProduct(new Product(null, "Item " + i, "Bulk item", i, i % 100, "Bulk"));
+            }
+            service.writeSnapshot();
+            service.updateProduct("1", new Product(null, "Laptop Pro", null, 1499.99, 4, "Computers"));
+            service.writeSnapshot();
+            service.deleteProduct("2");
+        }
+
+        // Three snapshots were written, the last by close(); only two are kept, and the log
+        // before the older of them is gone
+        List<Path> snapshots;
+        try (Stream<Path> files = Files.list(tempDir.resolve("snapshots"))) {
+            snapshots = files.sorted().toList();
+        }
+        assertEquals(2, snapshots.size());
+        assertTrue(Files.notExists(walSettings.path()));
+
+        // Flip one byte in the middle of the newest snapshot's products
+        Path newest = snapshots.get(1);
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            long middle = channel.size() / 2;
+            channel.read(one, middle);
+            one.put(0, (byte) ~one.get(0));
+            channel.write(one.flip(), middle);
+        }
+
+        try (ProductService restored = new ProductService(new AtomicIdGenerator(), walSettings, snapshotSettings)) {
+            assertEquals(20_004, restored.getProductCount());
+            assertEquals("Laptop Pro", restored.getProductById("1").orElseThrow().getName());
+            assertFalse(restored.exists("2"));
+            assertEquals("Item 19999", restored.getProductById("20005").orElseThrow().getName());
+        }
+    }
+}
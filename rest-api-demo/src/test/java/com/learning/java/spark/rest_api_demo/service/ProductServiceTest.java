@@ -0,0 +1,70 @@
+package com.learning.java.spark.rest_api_demo.service;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.model.ProductQuery;
+import com.learning.java.spark.rest_api_demo.service.id.AtomicIdGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ProductService write paths under concurrency
+ */
+public class ProductServiceTest {
+
+    @Test
+    public void testProductStaysVisibleDuringReplacement() throws Exception {
+        ProductService service = new ProductService();
+        String id = service.createProduct(new Product(null, "Chair", "Oak", 40.0, 3, "Furniture")).getId();
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> missing = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            ProductQuery all = new ProductQuery(null, null, null, null, 1000);
+            while (!done.get() && missing.get() == null) {
+                if (service.getProductById(id).isEmpty()) {
+                    missing.set("GET by id");
+                } else if (service.getProductsPage(all).items().stream().noneMatch(p -> p.getId().equals(id))) {
+                    missing.set("listing");
+                } else if (service.getProductsPage(new ProductQuery("furniture", null, null, null, 1000)).items()
+                        .stream().noneMatch(p -> p.getId().equals(id))) {
+                    missing.set("category listing");
+                } else if (service.searchProducts("oak chair", 100).stream().noneMatch(p -> p.getId().equals(id))) {
+                    missing.set("search");
+                }
+            }
+        });
+        reader.start();
+        for (int n = 0; n < 20_000 && missing.get() == null; n++) {
+            String category = n % 2 == 0 ? "Furniture" : "FURNITURE";
+            service.updateProduct(id, new Product(null, "Chair " + n, "Oak", 40.0 + n % 7, n % 5, category));
+        }
+        done.set(true);
+        reader.join();
+
+        assertNull(missing.get(), "product went missing from " + missing.get());
+        assertEquals("Chair 19999", service.getProductById(id).orElseThrow().getName());
+        assertEquals(1, service.searchProducts("19999", 10).size());
+        assertTrue(service.searchProducts("19998", 10).isEmpty());
+        assertEquals(6, service.getProductCount());
+    }
+
+    @Test
+    public void testCreateNeverOverwritesAnExistingProduct() {
+        AtomicIdGenerator ids = new AtomicIdGenerator();
+        ProductService service = new ProductService(ids);
+        assertEquals(5, service.getProductCount());
+        Product laptop = service.getProductById("1").orElseThrow();
+
+        // A generator that starts over below IDs already in use
+        ids.reset();
+        Product created = service.createProduct(new Product(null, "Lamp", null, 19.99, 3, "Furniture"));
+        assertEquals("6", created.getId());
+        assertEquals(6, service.getProductCount());
+        assertEquals(laptop.getName(), service.getProductById("1").orElseThrow().getName());
+        assertEquals("7", service.createProduct(new Product(null, "Pen", null, 1.0, 1, "Office")).getId());
+    }
+}
@@ -0,0 +1,107 @@
+package com.learning.java.spark.rest_api_demo.service;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.model.Reservation;
+import com.learning.java.spark.rest_api_demo.service.persistence.ReservationJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for stock reservations on top of ProductService
+ */
+public class ReservationServiceTest {
+
+    @Test
+    public void testConcurrentReservationsNeverOversell() throws Exception {
+        ProductService products = new ProductService();
+        String id = products.createProduct(new Product(null, "Hot item", null, 9.99, 1000, "Sale")).getId();
+        ReservationService reservations = new ReservationService(products, false);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < 1500; i++) {
+            executor.submit(() -> {
+                try {
+                    reservations.reserve(id, 1, null);
+                    succeeded.incrementAndGet();
+                } catch (InsufficientStockException e) {
+                    rejected.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(1000, succeeded.get());
+        assertEquals(500, rejected.get());
+        assertEquals(0, products.getProductById(id).orElseThrow().getQuantity());
+        assertEquals(1000, reservations.heldCount());
+    }
+
+    @Test
+    public void testExpiredReservationsAreRestocked() {
+        ProductService products = new ProductService();
+        String id = products.createProduct(new Product(null, "Ticket", null, 20, 5, "Events")).getId();
+        ReservationService reservations = new ReservationService(products, false);
+
+        Reservation shortHold = reservations.reserve(id, 2, Duration.ofSeconds(10)).orElseThrow();
+        Reservation longHold = reservations.reserve(id, 1, Duration.ofMinutes(10)).orElseThrow();
+        Reservation confirmed = reservations.reserve(id, 1, Duration.ofSeconds(10)).orElseThrow();
+        reservations.confirm(id, confirmed.id()).orElseThrow();
+        assertEquals(1, products.getProductById(id).orElseThrow().getQuantity());
+
+        assertEquals(1, reservations.expire(shortHold.expiresAt()));
+        assertEquals(3, products.getProductById(id).orElseThrow().getQuantity());
+        assertTrue(reservations.release(id, shortHold.id()).isEmpty());
+        assertEquals(Reservation.Status.EXPIRED, reservations.find(shortHold.id()).orElseThrow().status());
+
+        // Releasing against another product does nothing
+        assertTrue(reservations.release("1", longHold.id()).isEmpty());
+        assertEquals(Reservation.Status.RELEASED, reservations.release(id, longHold.id()).orElseThrow().status());
+        assertEquals(4, products.getProductById(id).orElseThrow().getQuantity());
+        assertEquals(0, reservations.expire(LocalDateTime.now().plusDays(2)));
+    }
+
+    @Test
+    public void testHeldReservationsSurviveRestart(@TempDir Path directory) throws Exception {
+        Path journalPath = directory.resolve("reservations.journal");
+        ProductService products = new ProductService();
+        String id = products.createProduct(new Product(null, "Ticket", null, 20, 10, "Events")).getId();
+
+        ReservationService before = new ReservationService(products, ReservationJournal.open(journalPath), false);
+        Reservation released = before.reserve(id, 1, null).orElseThrow();
+        Reservation shortHold = before.reserve(id, 2, Duration.ofSeconds(10)).orElseThrow();
+        Reservation longHold = before.reserve(id, 3, Duration.ofMinutes(10)).orElseThrow();
+        before.release(id, released.id()).orElseThrow();
+        before.close();
+        assertEquals(5, products.getProductById(id).orElseThrow().getQuantity());
+
+        // The catalog kept its stock through the product log; the holds come back from the journal
+        ReservationService after = new ReservationService(products, ReservationJournal.open(journalPath), false);
+        assertEquals(2, after.heldCount());
+        assertEquals(1, after.expire(shortHold.expiresAt()));
+        assertEquals(7, products.getProductById(id).orElseThrow().getQuantity());
+        assertEquals(Reservation.Status.CONFIRMED, after.confirm(id, longHold.id()).orElseThrow().status());
+
+        // New reservations never reuse a recovered ID
+        Reservation next = after.reserve(id, 1, null).orElseThrow();
+        assertTrue(Long.parseLong(next.id()) > Long.parseLong(longHold.id()));
+        after.close();
+
+        ReservationService reopened = new ReservationService(products, ReservationJournal.open(journalPath), false);
+        assertEquals(1, reopened.heldCount());
+        assertEquals(next, reopened.find(next.id()).orElseThrow());
+        reopened.close();
+    }
+}
@@ -0,0 +1,97 @@
+package com.learning.java.spark.rest_api_demo.service.feed;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.model.ProductChange;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the bounded change feed
+ */
+public class ChangeFeedTest {
+
+    private static Product product(int n) {
+        Product product = new Product(Integer.toString(n), "Item " + n, null, n, n, "Tools");
+        product.setVersion(n);
+        return product;
+    }
+
+    @Test
+    public void testResumeAndGapAfterFallingBehind() throws Exception {
+        ChangeFeed feed = new ChangeFeed(new ChangeFeedSettings(4, 2, 15));
+        feed.onChange(null, product(1));
+        feed.onChange(product(1), product(2));
+        String firstId;
+        try (ChangeFeed.Cursor cursor = feed.subscribe(null).orElseThrow()) {
+            // A new cursor starts at the next change
+            assertNull(cursor.next(0));
+            feed.onChange(product(2), null);
+            ChangeFeed.Event deleted = cursor.next(0);
+            assertEquals(ProductChange.Type.DELETED, deleted.change().type());
+            assertEquals(2, deleted.change().version());
+            assertNull(deleted.change().product());
+            firstId = deleted.id();
+
+            // Six more changes overwrite the four-slot ring before the cursor reads them
+            for (int n = 3; n <= 8; n++) {
+                feed.onChange(null, product(n));
+            }
+            assertNull(cursor.next(0));
+            assertTrue(cursor.takeGap());
+            assertFalse(cursor.takeGap());
+            feed.onChange(null, product(9));
+            assertEquals("9", cursor.next(0).change().id());
+        }
+
+        // Resuming is only possible while the change after the given ID is still buffered
+        try (ChangeFeed.Cursor cursor = feed.subscribe(firstId).orElseThrow()) {
+            assertTrue(cursor.takeGap());
+            assertNull(cursor.next(0));
+        }
+        String sixth = firstId.substring(0, firstId.indexOf('-') + 1) + 6;
+        try (ChangeFeed.Cursor cursor = feed.subscribe(sixth).orElseThrow()) {
+            assertFalse(cursor.takeGap());
+            List<String> ids = new ArrayList<>();
+            for (ChangeFeed.Event event; (event = cursor.next(0)) != null; ) {
+                ids.add(event.change().id());
+            }
+            assertEquals(List.of("6", "7", "8", "9"), ids);
+        }
+        try (ChangeFeed.Cursor cursor = feed.subscribe("another-process-3").orElseThrow()) {
+            assertTrue(cursor.takeGap());
+        }
+    }
+
+    @Test
+    public void testSubscribersAreCappedAndWokenByWriters() throws Exception {
+        ChangeFeed feed = new ChangeFeed(new ChangeFeedSettings(16, 1, 15));
+        try (ChangeFeed.Cursor cursor = feed.subscribe(null).orElseThrow()) {
+            assertTrue(feed.subscribe(null).isEmpty());
+
+            Thread writer = new Thread(() -> {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                feed.onChange(null, product(1));
+            });
+            writer.start();
+            long start = System.nanoTime();
+            ChangeFeed.Event event = cursor.next(10_000);
+            assertNotNull(event);
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+            writer.join();
+        }
+        // Closing a cursor frees its slot; closing the feed ends waits at once
+        try (ChangeFeed.Cursor cursor = feed.subscribe(null).orElseThrow()) {
+            feed.close();
+            assertNull(cursor.next(10_000));
+        }
+        assertTrue(feed.subscribe(null).isEmpty());
+    }
+}
@@ -0,0 +1,99 @@
+package com.learning.java.spark.rest_api_demo.service.id;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Uniqueness tests for the ID generators under concurrent use
+ */
+public class IdGeneratorTest {
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 20_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testAtomicGeneratorIsUniqueUnderConcurrency() throws InterruptedException {
+        IdGenerator generator = new AtomicIdGenerator();
+        Set<Long> ids = generateConcurrently(generator, generator);
+
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+        assertTrue(ids.contains(1L));
+    }
+
+    @Test
+    public void testAtomicGeneratorResetStartsOver() {
+        IdGenerator generator = new AtomicIdGenerator();
+        generator.nextId();
+        generator.nextId();
+        generator.reset();
+
+        assertEquals(1L, generator.nextId());
+    }
+
+    @Test
+    public void testLeasingGeneratorsSharingAFileNeverOverlap() throws InterruptedException {
+        Path allocator = tempDir.resolve("ids.alloc");
+        IdGenerator first = new BlockLeasingIdGenerator(allocator, 100);
+        IdGenerator second = new BlockLeasingIdGenerator(allocator, 100);
+
+        Set<Long> ids = generateConcurrently(first, second);
+
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+    }
+
+    @Test
+    public void testLeasingGeneratorResetDoesNotReuseIds() {
+        Path allocator = tempDir.resolve("ids.alloc");
+        IdGenerator generator = new BlockLeasingIdGenerator(allocator, 10);
+        long first = generator.nextId();
+        generator.reset();
+
+        assertTrue(generator.nextId() >= first + 10);
+    }
+
+    @Test
+    public void testLeasingGeneratorAdvancesWithinItsBlock() throws Exception {
+        Path allocator = tempDir.resolve("ids.alloc");
+        IdGenerator generator = new BlockLeasingIdGenerator(allocator, 100);
+        assertEquals(1, generator.nextId());
+
+        // IDs inside the leased block need no new lease
+        generator.advancePast(50);
+        generator.advancePast(20);
+        assertEquals(51, generator.nextId());
+        assertEquals(101, ByteBuffer.wrap(Files.readAllBytes(allocator)).getLong());
+
+        generator.advancePast(150);
+        assertEquals(151, generator.nextId());
+        assertEquals(251, ByteBuffer.wrap(Files.readAllBytes(allocator)).getLong());
+    }
+
+    private static Set<Long> generateConcurrently(IdGenerator a, IdGenerator b) throws InterruptedException {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            IdGenerator generator = t % 2 == 0 ? a : b;
+            executor.submit(() -> {
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    ids.add(generator.nextId());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        return ids;
+    }
+}
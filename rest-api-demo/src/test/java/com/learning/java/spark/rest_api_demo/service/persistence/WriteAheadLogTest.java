@@ -0,0 +1,89 @@
+package com.learning.java.spark.rest_api_demo.service.persistence;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for write-ahead log segments and for how the log behaves once it can no longer be written
+ */
+public class WriteAheadLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @EnumSource(value = DurabilityMode.class, names = {"SYNC", "GROUP"})
+    public void testFailedChannelFailsTheLog(DurabilityMode mode) throws Exception {
+        WalSettings settings = new WalSettings(tempDir.resolve("products.wal"), mode, 1);
+        AtomicReference<FileChannel> channel = new AtomicReference<>();
+        WriteAheadLog wal = WriteAheadLog.open(settings, 0, record -> { }, segment -> {
+            channel.set(FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            return channel.get();
+        });
+
+        wal.awaitDurable(wal.append(WalRecord.put(product("1"))));
+
+        // Every write from here on fails
+        channel.get().close();
+        long position = wal.append(WalRecord.put(product("2")));
+        assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(UncheckedIOException.class, () -> wal.awaitDurable(position)));
+        assertThrows(UncheckedIOException.class, () -> wal.append(WalRecord.put(product("3"))));
+        assertThrows(UncheckedIOException.class, wal::close);
+
+        // Only the record acknowledged before the failure is in the log
+        List<WalRecord> replayed = new ArrayList<>();
+        WriteAheadLog.open(settings, replayed::add).close();
+        assertEquals(1, replayed.size());
+        assertEquals("1", replayed.get(0).product().getId());
+    }
+
+    @ParameterizedTest
+    @EnumSource(DurabilityMode.class)
+    public void testRotatedSegmentsReplayInOrder(DurabilityMode mode) throws Exception {
+        WalSettings settings = new WalSettings(tempDir.resolve("products.wal"), mode, 1);
+        long second;
+        try (WriteAheadLog wal = WriteAheadLog.open(settings, record -> { })) {
+            wal.append(WalRecord.put(product("1")));
+            long first = wal.rotate();
+            assertEquals(wal.position(), first);
+            assertEquals(first, wal.rotate());
+            wal.append(WalRecord.put(product("2")));
+            second = wal.rotate();
+            wal.append(WalRecord.delete(1));
+            wal.append(WalRecord.put(product("3")));
+
+            wal.dropBefore(first);
+            assertTrue(Files.notExists(settings.path()));
+            assertTrue(Files.exists(tempDir.resolve(String.format("products.wal.%020d", first))));
+        }
+
+        List<Long> ids = new ArrayList<>();
+        try (WriteAheadLog wal = WriteAheadLog.open(settings, 0, record -> ids.add(record.id()))) {
+            wal.append(WalRecord.put(product("4")));
+        }
+        assertEquals(List.of(2L, 1L, 3L), ids);
+
+        ids.clear();
+        WriteAheadLog.open(settings, second, record -> ids.add(record.id())).close();
+        assertEquals(List.of(1L, 3L, 4L), ids);
+    }
+
+    private static Product product(String id) {
+        return new Product(id, "Product " + id, null, 1.0, 1, "Test");
+    }
+}
@@ -0,0 +1,123 @@
+package com.learning.java.spark.rest_api_demo.service.store;
+
+import com.learning.java.spark.rest_api_demo.model.Product;
+import com.learning.java.spark.rest_api_demo.util.JsonUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the heap and off-heap product stores
+ */
+public class ProductStoreTest {
+
+    private static ProductStore store(String kind) {
+        return kind.equals("offheap") ? ProductStores.offHeap() : ProductStores.heap();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "offheap"})
+    public void testProductsRoundTripUnchanged(String kind) {
+        ProductStore store = store(kind);
+        Product product = new Product("42", "Lämp ✨", null, 19.99, 3, "Lighting",
+                LocalDateTime.of(2024, 2, 29, 23, 59, 59, 123_456_789), LocalDateTime.of(1969, 12, 31, 0, 0));
+        product.setVersion(7);
+        store.put(product);
+
+        Product stored = store.get(42);
+        assertEquals(JsonUtil.toJson(product), JsonUtil.toJson(stored));
+        assertEquals(7, stored.getVersion());
+        assertNotSame(product, stored);
+        assertNull(store.get(41));
+        assertNull(store.get(1_000_000));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "offheap"})
+    public void testOrderedIterationAndCategoryCodes(String kind) {
+        ProductStore store = store(kind);
+        for (long id : new long[]{5, 1, 3, 2, 4, 100_000}) {
+            store.put(new Product(Long.toString(id), "Item " + id, null, id, 1, id % 2 == 0 ? "Even" : "Odd"));
+        }
+        store.remove(3);
+        store.remove(3);
+        assertEquals(5, store.size());
+        assertFalse(store.contains(3));
+
+        List<String> ids = new ArrayList<>();
+        store.ascendingFrom(1).forEachRemaining(product -> ids.add(product.getId()));
+        assertEquals(List.of("2", "4", "5", "100000"), ids);
+
+        // Equal categories decode to one shared instance
+        assertSame(store.get(1).getCategory(), store.get(5).getCategory());
+        assertEquals("Even", store.get(2).getCategory());
+    }
+
+    @Test
+    public void testOffHeapRewritesDoNotGrowStringSpace() {
+        OffHeapProductStore store = (OffHeapProductStore) ProductStores.offHeap();
+        String description = "A description long enough to fill a few slots of the string arena";
+        for (int id = 1; id <= 20_000; id++) {
+            store.put(new Product(Integer.toString(id), "Item " + id, description, 1.0, 0, "Bulk"));
+        }
+        long allocated = store.allocatedBytes();
+
+        // Quantity-only writes keep the stored strings
+        for (int n = 1; n <= 200_000; n++) {
+            store.put(new Product("1", "Item 1", description, 1.0, n, "Bulk"));
+        }
+        assertEquals(allocated, store.allocatedBytes());
+        assertEquals(0, store.freeStringBytes());
+
+        // Renames and deletes give their space back for later strings to reuse
+        for (int n = 1; n <= 200_000; n++) {
+            store.put(new Product("2", "Renamed " + n % 10, description + n % 10, 1.0, n, "Bulk"));
+        }
+        for (int id = 10_001; id <= 20_000; id++) {
+            store.remove(id);
+        }
+        for (int id = 20_001; id <= 30_000; id++) {
+            store.put(new Product(Integer.toString(id), "Item " + id, description, 1.0, 0, "Bulk"));
+        }
+        assertEquals(allocated, store.allocatedBytes());
+        assertEquals("Renamed 0", store.get(2).getName());
+        assertEquals(description, store.get(30_000).getDescription());
+    }
+
+    @Test
+    public void testOffHeapReadersNeverSeeATornRow() throws Exception {
+        ProductStore store = ProductStores.offHeap();
+        store.put(new Product("7", "Item 0", "Version 0", 0, 0, "Tools"));
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> torn = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get() && torn.get() == null) {
+                Product product = store.get(7);
+                int n = product.getQuantity();
+                if (product.getPrice() != n || !product.getName().equals("Item " + n)
+                        || !product.getDescription().equals("Version " + n)) {
+                    torn.set(JsonUtil.toJson(product));
+                }
+            }
+        });
+        reader.start();
+        for (int n = 1; n <= 50_000; n++) {
+            store.put(new Product("7", "Item " + n, "Version " + n, n, n, "Tools"));
+        }
+        done.set(true);
+        reader.join();
+
+        assertNull(torn.get());
+        assertEquals(50_000, store.get(7).getQuantity());
+        assertEquals(1, store.size());
+    }
+}